@@ -0,0 +1,81 @@
+package net.cachapa.expandablelayout.util;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Reference cubic-bezier easing from (0,0) to (1,1), evaluated analytically on every call by
+ * solving x(t) = input with Newton-Raphson iterations and falling back to bisection.
+ */
+class CubicBezier implements Interpolator {
+    private static final float EPSILON = 1e-5f;
+    private static final int NEWTON_ITERATIONS = 8;
+    private static final int BISECTION_ITERATIONS = 32;
+
+    // Polynomial coefficients, with x(t) = ((ax * t + bx) * t + cx) * t and likewise for y
+    private final float ax, bx, cx;
+    private final float ay, by, cy;
+
+    CubicBezier(float x1, float y1, float x2, float y2) {
+        cx = 3 * x1;
+        bx = 3 * (x2 - x1) - cx;
+        ax = 1 - cx - bx;
+        cy = 3 * y1;
+        by = 3 * (y2 - y1) - cy;
+        ay = 1 - cy - by;
+    }
+
+    @Override
+    public float getInterpolation(float input) {
+        if (input >= 1.0f) {
+            return 1.0f;
+        }
+        if (input <= 0f) {
+            return 0f;
+        }
+        return sampleY(solveT(input));
+    }
+
+    float sampleX(float t) {
+        return ((ax * t + bx) * t + cx) * t;
+    }
+
+    float sampleY(float t) {
+        return ((ay * t + by) * t + cy) * t;
+    }
+
+    private float sampleDerivativeX(float t) {
+        return (3 * ax * t + 2 * bx) * t + cx;
+    }
+
+    private float solveT(float x) {
+        float t = x;
+        for (int i = 0; i < NEWTON_ITERATIONS; i++) {
+            float error = sampleX(t) - x;
+            if (Math.abs(error) < EPSILON) {
+                return t;
+            }
+            float derivative = sampleDerivativeX(t);
+            if (Math.abs(derivative) < 1e-6f) {
+                break;
+            }
+            t -= error / derivative;
+        }
+
+        float low = 0;
+        float high = 1;
+        t = x;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            float sample = sampleX(t);
+            if (Math.abs(sample - x) < EPSILON) {
+                break;
+            }
+            if (x > sample) {
+                low = t;
+            } else {
+                high = t;
+            }
+            t = (low + high) / 2;
+        }
+        return t;
+    }
+}
@@ -0,0 +1,52 @@
+package net.cachapa.expandablelayout.util;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Stand-in for the framework {@code android.view.animation.PathInterpolator}, which isn't available
+ * on the JVM. Like the framework class, the curve is flattened into line segments up front and
+ * every call binary searches the x coordinates before interpolating linearly.
+ */
+class FlattenedPathInterpolator implements Interpolator {
+    // The framework approximates paths with a precision of 0.002, roughly 500 segments
+    private static final int SEGMENTS = 500;
+
+    private final float[] x = new float[SEGMENTS + 1];
+    private final float[] y = new float[SEGMENTS + 1];
+
+    FlattenedPathInterpolator(CubicBezier curve) {
+        for (int i = 0; i <= SEGMENTS; i++) {
+            float t = (float) i / SEGMENTS;
+            x[i] = curve.sampleX(t);
+            y[i] = curve.sampleY(t);
+        }
+    }
+
+    @Override
+    public float getInterpolation(float t) {
+        if (t <= 0) {
+            return 0;
+        } else if (t >= 1) {
+            return 1;
+        }
+
+        int startIndex = 0;
+        int endIndex = x.length - 1;
+        while (endIndex - startIndex > 1) {
+            int midIndex = (startIndex + endIndex) / 2;
+            if (t < x[midIndex]) {
+                endIndex = midIndex;
+            } else {
+                startIndex = midIndex;
+            }
+        }
+
+        float xRange = x[endIndex] - x[startIndex];
+        if (xRange == 0) {
+            return y[startIndex];
+        }
+
+        float fraction = (t - x[startIndex]) / xRange;
+        return y[startIndex] + fraction * (y[endIndex] - y[startIndex]);
+    }
+}
@@ -0,0 +1,26 @@
+package net.cachapa.expandablelayout.util;
+
+import java.util.Random;
+
+final class Inputs {
+    /**
+     * Number of precomputed inputs, a power of two so that the index can wrap with a mask
+     */
+    static final int COUNT = 1024;
+    static final int MASK = COUNT - 1;
+
+    private Inputs() {
+    }
+
+    /**
+     * Uniformly distributed inputs between 0 and 1, seeded so that every run sees the same values
+     */
+    static float[] random() {
+        Random random = new Random(42);
+        float[] inputs = new float[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            inputs[i] = random.nextFloat();
+        }
+        return inputs;
+    }
+}
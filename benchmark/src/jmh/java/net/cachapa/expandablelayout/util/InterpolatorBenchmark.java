@@ -0,0 +1,62 @@
+package net.cachapa.expandablelayout.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the built-in {@link FastOutSlowInInterpolator} and {@link CubicBezierInterpolator} with a
+ * path-based interpolator and with analytic evaluation of the same curve.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InterpolatorBenchmark {
+    private float[] inputs;
+    private int index;
+
+    private FastOutSlowInInterpolator fastOutSlowIn;
+    private CubicBezierInterpolator cubicBezier;
+    private FlattenedPathInterpolator path;
+    private CubicBezier analytic;
+
+    @Setup
+    public void setup() {
+        inputs = Inputs.random();
+        fastOutSlowIn = new FastOutSlowInInterpolator();
+        cubicBezier = new CubicBezierInterpolator(0.4f, 0, 0.2f, 1);
+        analytic = new CubicBezier(0.4f, 0, 0.2f, 1);
+        path = new FlattenedPathInterpolator(analytic);
+    }
+
+    @Benchmark
+    public float fastOutSlowIn() {
+        return fastOutSlowIn.getInterpolation(nextInput());
+    }
+
+    @Benchmark
+    public float cubicBezier() {
+        return cubicBezier.getInterpolation(nextInput());
+    }
+
+    @Benchmark
+    public float path() {
+        return path.getInterpolation(nextInput());
+    }
+
+    @Benchmark
+    public float analytic() {
+        return analytic.getInterpolation(nextInput());
+    }
+
+    private float nextInput() {
+        index = (index + 1) & Inputs.MASK;
+        return inputs[index];
+    }
+}
@@ -0,0 +1,48 @@
+package net.cachapa.expandablelayout.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LookupTableInterpolator#getInterpolation(float)} across table sizes, using tables
+ * sampled from the fast-out-slow-in curve.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupTableBenchmark {
+    @Param({"51", "201", "1001", "4001"})
+    public int tableSize;
+
+    private float[] inputs;
+    private int index;
+
+    private LookupTableInterpolator interpolator;
+
+    @Setup
+    public void setup() {
+        inputs = Inputs.random();
+
+        CubicBezier curve = new CubicBezier(0.4f, 0, 0.2f, 1);
+        float[] values = new float[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            values[i] = curve.getInterpolation((float) i / (tableSize - 1));
+        }
+        interpolator = new LookupTableInterpolator(values) {
+        };
+    }
+
+    @Benchmark
+    public float lookupTable() {
+        index = (index + 1) & Inputs.MASK;
+        return interpolator.getInterpolation(inputs[index]);
+    }
+}
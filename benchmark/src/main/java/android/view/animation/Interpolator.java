@@ -0,0 +1,9 @@
+package android.view.animation;
+
+/**
+ * Minimal stand-in for the framework interface, so that the library interpolators can be compiled
+ * and benchmarked outside of Android.
+ */
+public interface Interpolator {
+    float getInterpolation(float input);
+}
@@ -9,12 +9,14 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import net.cachapa.expandablelayout.ExpandableGroup;
 import net.cachapa.expandablelayout.ExpandableLayout;
 
 public class AccordionFragment extends Fragment implements View.OnClickListener {
 
     private ExpandableLayout expandableLayout0;
     private ExpandableLayout expandableLayout1;
+    private ExpandableGroup group;
 
     @Nullable
     @Override
@@ -24,20 +26,24 @@ public class AccordionFragment extends Fragment implements View.OnClickListener
         expandableLayout0 = rootView.findViewById(R.id.expandable_layout_0);
         expandableLayout1 = rootView.findViewById(R.id.expandable_layout_1);
 
-        expandableLayout0.setOnExpansionUpdateListener(new ExpandableLayout.OnExpansionUpdateListener() {
+        expandableLayout0.addOnExpansionStateChangeListener(new ExpandableLayout.OnExpansionStateChangeListener() {
             @Override
-            public void onExpansionUpdate(float expansionFraction, int state) {
+            public void onExpansionStateChange(int state) {
                 Log.d("ExpandableLayout0", "State: " + state);
             }
         });
 
-        expandableLayout1.setOnExpansionUpdateListener(new ExpandableLayout.OnExpansionUpdateListener() {
+        expandableLayout1.addOnExpansionStateChangeListener(new ExpandableLayout.OnExpansionStateChangeListener() {
             @Override
-            public void onExpansionUpdate(float expansionFraction, int state) {
+            public void onExpansionStateChange(int state) {
                 Log.d("ExpandableLayout1", "State: " + state);
             }
         });
 
+        group = new ExpandableGroup();
+        group.add(expandableLayout0);
+        group.add(expandableLayout1);
+
         rootView.findViewById(R.id.expand_button_0).setOnClickListener(this);
         rootView.findViewById(R.id.expand_button_1).setOnClickListener(this);
 
@@ -47,11 +53,9 @@ public class AccordionFragment extends Fragment implements View.OnClickListener
     @Override
     public void onClick(View view) {
         if (view.getId() == R.id.expand_button_0) {
-            expandableLayout0.expand();
-            expandableLayout1.collapse();
+            group.expand(expandableLayout0);
         } else {
-            expandableLayout0.collapse();
-            expandableLayout1.expand();
+            group.expand(expandableLayout1);
         }
     }
 }
@@ -14,6 +14,7 @@ import android.view.animation.OvershootInterpolator;
 import android.widget.TextView;
 
 import net.cachapa.expandablelayout.ExpandableLayout;
+import net.cachapa.expandablelayout.ExpansionStateHelper;
 
 public class RecyclerViewFragment extends Fragment {
     @Nullable
@@ -23,20 +24,13 @@ public class RecyclerViewFragment extends Fragment {
 
         RecyclerView recyclerView = rootView.findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        recyclerView.setAdapter(new SimpleAdapter(recyclerView));
+        recyclerView.setAdapter(new SimpleAdapter());
 
         return rootView;
     }
 
     private static class SimpleAdapter extends RecyclerView.Adapter<SimpleAdapter.ViewHolder> {
-        private static final int UNSELECTED = -1;
-
-        private RecyclerView recyclerView;
-        private int selectedItem = UNSELECTED;
-
-        public SimpleAdapter(RecyclerView recyclerView) {
-            this.recyclerView = recyclerView;
-        }
+        private ExpansionStateHelper expansionState = new ExpansionStateHelper(true);
 
         @Override
         public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -55,7 +49,7 @@ public class RecyclerViewFragment extends Fragment {
             return 100;
         }
 
-        public class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener, ExpandableLayout.OnExpansionUpdateListener {
+        public class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener, ExpandableLayout.OnExpansionStateChangeListener {
             private ExpandableLayout expandableLayout;
             private TextView expandButton;
 
@@ -64,7 +58,7 @@ public class RecyclerViewFragment extends Fragment {
 
                 expandableLayout = itemView.findViewById(R.id.expandable_layout);
                 expandableLayout.setInterpolator(new OvershootInterpolator());
-                expandableLayout.setOnExpansionUpdateListener(this);
+                expandableLayout.addOnExpansionStateChangeListener(this);
                 expandButton = itemView.findViewById(R.id.expand_button);
 
                 expandButton.setOnClickListener(this);
@@ -72,37 +66,21 @@ public class RecyclerViewFragment extends Fragment {
 
             public void bind() {
                 int position = getAdapterPosition();
-                boolean isSelected = position == selectedItem;
 
                 expandButton.setText(position + ". Tap to expand");
-                expandButton.setSelected(isSelected);
-                expandableLayout.setExpanded(isSelected, false);
+                expandButton.setSelected(expansionState.isExpanded(position));
+                expansionState.bind(expandableLayout, position);
             }
 
             @Override
             public void onClick(View view) {
-                ViewHolder holder = (ViewHolder) recyclerView.findViewHolderForAdapterPosition(selectedItem);
-                if (holder != null) {
-                    holder.expandButton.setSelected(false);
-                    holder.expandableLayout.collapse();
-                }
-
-                int position = getAdapterPosition();
-                if (position == selectedItem) {
-                    selectedItem = UNSELECTED;
-                } else {
-                    expandButton.setSelected(true);
-                    expandableLayout.expand();
-                    selectedItem = position;
-                }
+                expansionState.toggle(expandableLayout, getAdapterPosition());
             }
 
             @Override
-            public void onExpansionUpdate(float expansionFraction, int state) {
+            public void onExpansionStateChange(int state) {
                 Log.d("ExpandableLayout", "State: " + state);
-                if (state == ExpandableLayout.State.EXPANDING) {
-                    recyclerView.smoothScrollToPosition(getAdapterPosition());
-                }
+                expandButton.setSelected(expandableLayout.isExpanded());
             }
         }
     }
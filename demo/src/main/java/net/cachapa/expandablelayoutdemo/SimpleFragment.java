@@ -24,16 +24,16 @@ public class SimpleFragment extends Fragment implements View.OnClickListener {
         expandableLayout0 = rootView.findViewById(R.id.expandable_layout_0);
         expandableLayout1 = rootView.findViewById(R.id.expandable_layout_1);
 
-        expandableLayout0.setOnExpansionUpdateListener(new ExpandableLayout.OnExpansionUpdateListener() {
+        expandableLayout0.addOnExpansionStateChangeListener(new ExpandableLayout.OnExpansionStateChangeListener() {
             @Override
-            public void onExpansionUpdate(float expansionFraction, int state) {
+            public void onExpansionStateChange(int state) {
                 Log.d("ExpandableLayout0", "State: " + state);
             }
         });
 
-        expandableLayout1.setOnExpansionUpdateListener(new ExpandableLayout.OnExpansionUpdateListener() {
+        expandableLayout1.addOnExpansionStateChangeListener(new ExpandableLayout.OnExpansionStateChangeListener() {
             @Override
-            public void onExpansionUpdate(float expansionFraction, int state) {
+            public void onExpansionStateChange(int state) {
                 Log.d("ExpandableLayout1", "State: " + state);
             }
         });
@@ -0,0 +1,168 @@
+package net.cachapa.expandablelayout;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Drives active {@link ExpandableLayout}s from a single callback of a {@link FrameClock}, the
+ * default one being driven by the {@code Choreographer}. The layouts that opted into the shared
+ * engine use the one engine of their clock, the others have an engine of their own.
+ * <p>
+ * All expansions are advanced in one pass, and the layout requests they cause are held back until
+ * the pass is over, so each layout requests a layout at most once per frame regardless of how many
+ * layouts are animating.
+ * <p>
+ * Nested layouts are advanced from the innermost outwards. When a layout and one of its
+ * ancestors both need a layout, only the outermost one requests it, and the views in between
+ * are just marked, so the tree is measured top-down once per frame.
+ */
+final class AnimationEngine implements FrameClock.Callback {
+    private static final WeakHashMap<FrameClock, AnimationEngine> ENGINES = new WeakHashMap<FrameClock, AnimationEngine>();
+
+    // Weakly referenced, so that the engine doesn't keep its key in ENGINES alive. The layouts
+    // using the clock hold on to it.
+    private final WeakReference<FrameClock> clock;
+    private final ArrayList<ExpandableLayout> layouts = new ArrayList<ExpandableLayout>();
+    private final ArrayList<ExpandableLayout> pendingLayouts = new ArrayList<ExpandableLayout>();
+    private boolean frameScheduled;
+    private boolean inFrame;
+
+    /**
+     * @return The engine shared by all layouts using the given clock
+     */
+    static AnimationEngine forClock(FrameClock clock) {
+        AnimationEngine engine = ENGINES.get(clock);
+        if (engine == null) {
+            engine = new AnimationEngine(clock);
+            ENGINES.put(clock, engine);
+        }
+        return engine;
+    }
+
+    AnimationEngine(FrameClock clock) {
+        this.clock = new WeakReference<FrameClock>(clock);
+    }
+
+    void start(ExpandableLayout layout) {
+        if (!layouts.contains(layout)) {
+            layouts.add(layout);
+        }
+        scheduleFrame();
+    }
+
+    void cancel(ExpandableLayout layout) {
+        int index = layouts.indexOf(layout);
+        if (index < 0) {
+            return;
+        }
+        if (inFrame) {
+            // Removed once the current pass is over, so the indices stay valid while iterating
+            layouts.set(index, null);
+            return;
+        }
+        layouts.remove(index);
+
+        FrameClock clock = this.clock.get();
+        if (layouts.isEmpty() && frameScheduled && clock != null) {
+            clock.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    /**
+     * Defers a layout request until the end of the current frame
+     *
+     * @return false if no frame is being processed and the layout should be requested right away
+     */
+    boolean deferLayout(ExpandableLayout layout) {
+        if (!inFrame) {
+            return false;
+        }
+        if (!layout.engineLayoutPending) {
+            layout.engineLayoutPending = true;
+            pendingLayouts.add(layout);
+        }
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        sortByNestingDepth();
+
+        inFrame = true;
+        // Layouts started from a listener during this pass are picked up in the next frame
+        int count = layouts.size();
+        for (int i = 0; i < count; i++) {
+            ExpandableLayout layout = layouts.get(i);
+            if (layout != null && !layout.doAnimationFrame(frameTimeNanos)) {
+                layouts.set(i, null);
+            }
+        }
+        inFrame = false;
+
+        for (int i = layouts.size() - 1; i >= 0; i--) {
+            if (layouts.get(i) == null) {
+                layouts.remove(i);
+            }
+        }
+
+        // The outermost pending layouts keep their flag until every nested one has found them
+        for (int i = 0; i < pendingLayouts.size(); i++) {
+            ExpandableLayout layout = pendingLayouts.get(i);
+            ExpandableLayout ancestor = findPendingAncestor(layout);
+            if (ancestor != null) {
+                layout.forceLayoutUpTo(ancestor);
+                layout.engineLayoutPending = false;
+                pendingLayouts.set(i, null);
+            }
+        }
+        for (int i = 0; i < pendingLayouts.size(); i++) {
+            ExpandableLayout layout = pendingLayouts.get(i);
+            if (layout != null) {
+                layout.engineLayoutPending = false;
+                layout.requestExpansionLayout();
+            }
+        }
+        pendingLayouts.clear();
+
+        if (!layouts.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    private static ExpandableLayout findPendingAncestor(ExpandableLayout layout) {
+        for (ExpandableLayout ancestor = layout.expandableParent; ancestor != null; ancestor = ancestor.expandableParent) {
+            if (ancestor.engineLayoutPending) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Orders the layouts from the most to the least deeply nested, so that the size of nested
+     * content is updated before the layouts containing it. An insertion sort, since the list is
+     * short and already sorted from the previous frame.
+     */
+    private void sortByNestingDepth() {
+        for (int i = 1; i < layouts.size(); i++) {
+            ExpandableLayout layout = layouts.get(i);
+            int j = i - 1;
+            while (j >= 0 && layouts.get(j).nestingDepth < layout.nestingDepth) {
+                layouts.set(j + 1, layouts.get(j));
+                j--;
+            }
+            layouts.set(j + 1, layout);
+        }
+    }
+
+    private void scheduleFrame() {
+        FrameClock clock = this.clock.get();
+        if (!frameScheduled && clock != null) {
+            frameScheduled = true;
+            clock.postFrameCallback(this);
+        }
+    }
+}
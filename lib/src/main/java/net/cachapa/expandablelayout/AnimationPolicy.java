@@ -0,0 +1,69 @@
+package net.cachapa.expandablelayout;
+
+/**
+ * Decides how an {@link ExpandableLayout} animates, right before each animation starts. See
+ * {@link ExpandableLayout#setAnimationPolicy(AnimationPolicy)} and {@link DefaultAnimationPolicy}.
+ * <p>
+ * Both methods are called on the main thread.
+ */
+public interface AnimationPolicy {
+    /**
+     * Called before an animation starts
+     *
+     * @param layout   The layout about to animate
+     * @param decision Preset with the duration of the layout and a layout frame interval of 1,
+     *                 to be changed by the policy. Only valid during this call.
+     */
+    void onAnimationStart(ExpandableLayout layout, Decision decision);
+
+    /**
+     * Called when an animation ran to its end, and not when it was cancelled
+     *
+     * @param frameCount  Number of frames delivered, including those that didn't update the
+     *                    layout
+     * @param elapsedNanos Time from the first frame of the animation to its last, as given by the
+     *                     frame clock of the layout
+     */
+    void onAnimationEnd(ExpandableLayout layout, int frameCount, long elapsedNanos);
+
+    final class Decision {
+        private int duration;
+        private int layoutFrameInterval;
+
+        Decision() {
+        }
+
+        void reset(int duration) {
+            this.duration = duration;
+            this.layoutFrameInterval = 1;
+        }
+
+        public int getDuration() {
+            return duration;
+        }
+
+        /**
+         * @param duration Duration of the animation in milliseconds, before the system animator
+         *                 duration scale is applied, or 0 to jump straight to the end state
+         */
+        public void setDuration(int duration) {
+            this.duration = Math.max(0, duration);
+        }
+
+        public int getLayoutFrameInterval() {
+            return layoutFrameInterval;
+        }
+
+        /**
+         * @param layoutFrameInterval Update the layout on one out of every so many frames, e.g. 2
+         *                            to halve the number of layout passes. The last frame always
+         *                            updates the layout.
+         */
+        public void setLayoutFrameInterval(int layoutFrameInterval) {
+            if (layoutFrameInterval < 1) {
+                throw new IllegalArgumentException("The layout frame interval must be at least 1");
+            }
+            this.layoutFrameInterval = layoutFrameInterval;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.cachapa.expandablelayout;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * The default {@link FrameClock}, which delivers the frames of the {@link Choreographer}
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class ChoreographerFrameClock implements FrameClock {
+    private static ChoreographerFrameClock instance;
+
+    // Callbacks are posted on every frame, so their adapters are created once. Layouts and groups
+    // that don't share an engine post callbacks of their own, which the adapters only reference
+    // weakly so that they can still be collected.
+    private final WeakHashMap<Callback, Choreographer.FrameCallback> adapters = new WeakHashMap<Callback, Choreographer.FrameCallback>();
+
+    static ChoreographerFrameClock getInstance() {
+        if (instance == null) {
+            instance = new ChoreographerFrameClock();
+        }
+        return instance;
+    }
+
+    private ChoreographerFrameClock() {
+    }
+
+    @Override
+    public void postFrameCallback(Callback callback) {
+        Choreographer.FrameCallback adapter = adapters.get(callback);
+        if (adapter == null) {
+            adapter = new CallbackAdapter(callback);
+            adapters.put(callback, adapter);
+        }
+        Choreographer.getInstance().postFrameCallback(adapter);
+    }
+
+    @Override
+    public void removeFrameCallback(Callback callback) {
+        Choreographer.FrameCallback adapter = adapters.get(callback);
+        if (adapter != null) {
+            Choreographer.getInstance().removeFrameCallback(adapter);
+        }
+    }
+
+    @Override
+    public float getRefreshRate() {
+        return 0;
+    }
+
+    private static final class CallbackAdapter implements Choreographer.FrameCallback {
+        private final WeakReference<Callback> callback;
+
+        CallbackAdapter(Callback callback) {
+            this.callback = new WeakReference<Callback>(callback);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            Callback callback = this.callback.get();
+            if (callback != null) {
+                callback.doFrame(frameTimeNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.cachapa.expandablelayout;
+
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Bounded pool holding the content of layouts that have been collapsed for a while, see
+ * {@link ExpandableLayout#setContentPool(ContentPool, long)}.
+ * <p>
+ * Content is grouped by type (its content layout resource or content factory) and each type keeps
+ * at most a fixed number of views. When a type is full, the view that was parked the longest time
+ * ago is dropped, and its layout creates its content again the next time it expands.
+ * <p>
+ * Parked views keep a reference to their context, so a pool should not outlive the screen that
+ * uses it. Call {@link #clear()} when the screen is destroyed.
+ */
+public class ContentPool {
+    private static final int DEFAULT_MAX_PER_TYPE = 5;
+
+    private final int maxPerType;
+    private final HashMap<Object, ArrayList<Entry>> entries = new HashMap<Object, ArrayList<Entry>>();
+
+    public ContentPool() {
+        this(DEFAULT_MAX_PER_TYPE);
+    }
+
+    /**
+     * @param maxPerType Maximum number of views parked for each content type
+     */
+    public ContentPool(int maxPerType) {
+        if (maxPerType < 1) {
+            throw new IllegalArgumentException("The pool must hold at least one view per type");
+        }
+        this.maxPerType = maxPerType;
+    }
+
+    /**
+     * @return The total number of parked views
+     */
+    public int size() {
+        int size = 0;
+        for (ArrayList<Entry> typeEntries : entries.values()) {
+            size += typeEntries.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    void park(Object type, ExpandableLayout owner, View content) {
+        ArrayList<Entry> typeEntries = entries.get(type);
+        if (typeEntries == null) {
+            typeEntries = new ArrayList<Entry>(maxPerType);
+            entries.put(type, typeEntries);
+        }
+
+        // Entries are kept from least to most recently parked
+        if (typeEntries.size() >= maxPerType) {
+            typeEntries.remove(0);
+        }
+        typeEntries.add(new Entry(owner, content));
+    }
+
+    /**
+     * Takes back the content an owner parked, unless it has been evicted since
+     */
+    View reclaim(Object type, ExpandableLayout owner) {
+        ArrayList<Entry> typeEntries = entries.get(type);
+        if (typeEntries == null) {
+            return null;
+        }
+        for (int i = 0; i < typeEntries.size(); i++) {
+            Entry entry = typeEntries.get(i);
+            if (entry.owner == owner) {
+                typeEntries.remove(i);
+                return entry.content;
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+        final ExpandableLayout owner;
+        final View content;
+
+        Entry(ExpandableLayout owner, View content) {
+            this.owner = owner;
+            this.content = content;
+        }
+    }
+}
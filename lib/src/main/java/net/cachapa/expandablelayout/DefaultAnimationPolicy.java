@@ -0,0 +1,64 @@
+package net.cachapa.expandablelayout;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Animation policy that spends less time on animations when the device can't afford them:
+ * <ul>
+ * <li>In power save mode (API 21+), animations are half as long and update the layout on every
+ * other frame</li>
+ * <li>When recent animations delivered frames much slower than the display refresh rate, the
+ * layout is only updated on every other frame, or every third frame under heavy load</li>
+ * </ul>
+ * Frame pressure is tracked across all the layouts using the policy, so a single instance should
+ * be shared between them.
+ */
+public class DefaultAnimationPolicy implements AnimationPolicy {
+    // Weight of the last animation in the average frame interval
+    private static final float SMOOTHING = 0.25f;
+
+    // Average frame interval, in units of the display refresh interval
+    private float framePressure = 1;
+
+    @Override
+    public void onAnimationStart(ExpandableLayout layout, Decision decision) {
+        if (isPowerSaveMode(layout.getContext())) {
+            decision.setDuration(decision.getDuration() / 2);
+            decision.setLayoutFrameInterval(2);
+        }
+
+        if (framePressure > 3) {
+            decision.setLayoutFrameInterval(3);
+        } else if (framePressure > 1.5f) {
+            decision.setLayoutFrameInterval(Math.max(2, decision.getLayoutFrameInterval()));
+        }
+    }
+
+    @Override
+    public void onAnimationEnd(ExpandableLayout layout, int frameCount, long elapsedNanos) {
+        if (frameCount == 0) {
+            return;
+        }
+        float refreshIntervalNanos = 1e9f / layout.getRefreshRate();
+        float pressure = elapsedNanos / frameCount / refreshIntervalNanos;
+        framePressure += (pressure - framePressure) * SMOOTHING;
+    }
+
+    /**
+     * @return The average frame interval of recent animations, in units of the display refresh
+     * interval, so 1 when no frames are dropped
+     */
+    public float getFramePressure() {
+        return framePressure;
+    }
+
+    private static boolean isPowerSaveMode(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+}
@@ -0,0 +1,380 @@
+package net.cachapa.expandablelayout;
+
+import android.animation.Animator;
+import android.animation.ValueAnimator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
+
+import java.util.ArrayList;
+
+/**
+ * Coordinates a group of {@link ExpandableLayout}s, e.g. the sections of an accordion.
+ * <p>
+ * In single expansion mode (the default) expanding a layout collapses whichever one was open,
+ * and both are driven by the same animation, so a switch costs one frame callback and one layout
+ * pass per frame regardless of the size of the group. In multiple expansion mode the layouts are
+ * expanded and collapsed independently.
+ * <p>
+ * Layouts in a group should be expanded and collapsed through the group rather than directly.
+ * Switches start right away, without waiting for the
+ * {@link ExpandableLayout#setContentPreparer content preparer} of the layout being expanded.
+ */
+public class ExpandableGroup {
+    private static final int DEFAULT_DURATION = 300;
+    private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+
+    private final ArrayList<ExpandableLayout> layouts = new ArrayList<ExpandableLayout>();
+    private boolean singleExpansion;
+    private int duration = DEFAULT_DURATION;
+    // Duration of the running switch
+    private int switchDuration;
+
+    private ExpandableLayout expanded;
+
+    // Layouts driven by the running animation. Two lists are swapped between switches, so that
+    // switching doesn't allocate.
+    private ArrayList<ExpandableLayout> animating = new ArrayList<ExpandableLayout>();
+    private ArrayList<ExpandableLayout> pending = new ArrayList<ExpandableLayout>();
+    private final ArrayList<ExpandableLayout> finishing = new ArrayList<ExpandableLayout>();
+
+    // Animations are timed by the frame clock, or below API 16 without a clock, by the animator
+    private FrameClock frameClock;
+    private final GroupFrameCallback frameCallback = new GroupFrameCallback();
+    private ValueAnimator animator;
+    private final GroupAnimationListener animationListener = new GroupAnimationListener();
+
+    public ExpandableGroup() {
+        this(true);
+    }
+
+    /**
+     * @param singleExpansion Whether at most one layout of the group may be expanded at a time
+     */
+    public ExpandableGroup(boolean singleExpansion) {
+        this.singleExpansion = singleExpansion;
+    }
+
+    /**
+     * Adds a layout to the group. In single expansion mode, an expanded layout is collapsed
+     * without animation if another one in the group is already expanded.
+     */
+    public void add(ExpandableLayout layout) {
+        if (layouts.contains(layout)) {
+            return;
+        }
+        layouts.add(layout);
+
+        if (layout.isExpanded()) {
+            if (expanded == null || !singleExpansion) {
+                expanded = layout;
+            } else {
+                layout.jumpToState(false);
+            }
+        }
+    }
+
+    public void remove(ExpandableLayout layout) {
+        if (!layouts.remove(layout)) {
+            return;
+        }
+        if (animating.remove(layout)) {
+            layout.jumpToState(layout == expanded);
+        }
+        if (expanded == layout) {
+            expanded = null;
+        }
+    }
+
+    public boolean isSingleExpansion() {
+        return singleExpansion;
+    }
+
+    public void setSingleExpansion(boolean singleExpansion) {
+        this.singleExpansion = singleExpansion;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Duration of the animations driven by the group. Each layout still uses its own interpolator,
+     * and layouts with a proportional duration (see
+     * {@link ExpandableLayout#setProportionalDuration(float, int, int)}) use their own duration.
+     */
+    public void setDuration(int duration) {
+        this.duration = duration;
+    }
+
+    public FrameClock getFrameClock() {
+        return frameClock;
+    }
+
+    /**
+     * Drives the animations of the group from the given clock instead of the
+     * {@code Choreographer}, see {@link ExpandableLayout#setFrameClock(FrameClock)}. Layouts that
+     * are still animating jump to the end of their animation.
+     *
+     * @param frameClock The clock, or null to use the {@code Choreographer}
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        if (this.frameClock == frameClock) {
+            return;
+        }
+        cancelAnimation();
+        for (int i = 0; i < animating.size(); i++) {
+            ExpandableLayout layout = animating.get(i);
+            layout.jumpToState(layout == expanded);
+        }
+        animating.clear();
+        this.frameClock = frameClock;
+    }
+
+    /**
+     * Returns the expanded layout in single expansion mode, or the most recently expanded one in
+     * multiple expansion mode.
+     *
+     * @return The expanded layout, or null if there is none
+     */
+    public ExpandableLayout getExpanded() {
+        return expanded;
+    }
+
+    public void expand(ExpandableLayout layout) {
+        expand(layout, true);
+    }
+
+    public void expand(ExpandableLayout layout, boolean animate) {
+        checkMember(layout);
+        if (!singleExpansion) {
+            expanded = layout;
+            layout.expand(animate);
+        } else if (layout != expanded
+                || (layout.getState() != ExpandableLayout.State.EXPANDED && !animating.contains(layout))) {
+            switchTo(layout, animate);
+        }
+    }
+
+    public void collapse(ExpandableLayout layout) {
+        collapse(layout, true);
+    }
+
+    public void collapse(ExpandableLayout layout, boolean animate) {
+        checkMember(layout);
+        if (!singleExpansion) {
+            if (layout == expanded) {
+                expanded = null;
+            }
+            layout.collapse(animate);
+        } else if (layout == expanded) {
+            switchTo(null, animate);
+        }
+    }
+
+    public void toggle(ExpandableLayout layout) {
+        toggle(layout, true);
+    }
+
+    public void toggle(ExpandableLayout layout, boolean animate) {
+        if (layout.isExpanded()) {
+            collapse(layout, animate);
+        } else {
+            expand(layout, animate);
+        }
+    }
+
+    public void collapseAll() {
+        collapseAll(true);
+    }
+
+    public void collapseAll(boolean animate) {
+        if (singleExpansion) {
+            switchTo(null, animate);
+            return;
+        }
+        expanded = null;
+        for (int i = 0; i < layouts.size(); i++) {
+            layouts.get(i).collapse(animate);
+        }
+    }
+
+    private void checkMember(ExpandableLayout layout) {
+        if (!layouts.contains(layout)) {
+            throw new IllegalArgumentException("The layout is not part of this group");
+        }
+    }
+
+    /**
+     * Expands the target, if any, and collapses the layout that was expanded along with any
+     * layout still animating from a previous switch
+     */
+    private void switchTo(ExpandableLayout target, boolean animate) {
+        cancelAnimation();
+
+        pending.clear();
+        if (expanded != null && expanded != target) {
+            pending.add(expanded);
+        }
+        for (int i = 0; i < animating.size(); i++) {
+            ExpandableLayout layout = animating.get(i);
+            if (layout != target && layout != expanded) {
+                pending.add(layout);
+            }
+        }
+        if (target != null) {
+            pending.add(target);
+        }
+        animating.clear();
+        expanded = target;
+
+        // A duration scale of 0 means that animations are turned off
+        float durationScale = animate && !pending.isEmpty()
+                ? ExpandableLayout.getAnimatorDurationScale(pending.get(0).getContext()) : 1;
+        if (!animate || durationScale == 0) {
+            for (int i = 0; i < pending.size(); i++) {
+                ExpandableLayout layout = pending.get(i);
+                layout.jumpToState(layout == target);
+            }
+            pending.clear();
+            return;
+        }
+
+        ArrayList<ExpandableLayout> swap = animating;
+        animating = pending;
+        pending = swap;
+
+        // Layouts with a proportional duration keep it, and the switch lasts as long as the
+        // longest of them
+        switchDuration = 0;
+        for (int i = 0; i < animating.size(); i++) {
+            ExpandableLayout layout = animating.get(i);
+            switchDuration = Math.max(switchDuration, layout.beginExternalAnimation(layout == target ? 1 : 0, duration));
+        }
+
+        if (frameClock != null || android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
+            // Scaled like a ValueAnimator would be
+            frameCallback.start(frameClock != null ? frameClock : ChoreographerFrameClock.getInstance(),
+                    Math.round(switchDuration * 1e6 * durationScale));
+            return;
+        }
+
+        if (animator == null) {
+            animator = ValueAnimator.ofFloat(0, 1);
+            animator.setInterpolator(LINEAR_INTERPOLATOR);
+            animator.addUpdateListener(animationListener);
+            animator.addListener(animationListener);
+        }
+        animator.setDuration(switchDuration);
+        animator.start();
+    }
+
+    private void cancelAnimation() {
+        frameCallback.cancel();
+        if (animator != null) {
+            animator.cancel();
+        }
+    }
+
+    private void onAnimationFrame(float fraction) {
+        // All layouts are updated in the same callback, so they share one layout pass
+        for (int i = 0; i < animating.size(); i++) {
+            animating.get(i).onExternalAnimationFrame(fraction, switchDuration);
+        }
+    }
+
+    private void onAnimationEnd() {
+        // Listeners may start a new switch from here, which must not see the finished layouts
+        for (int i = 0; i < animating.size(); i++) {
+            finishing.add(animating.get(i));
+        }
+        animating.clear();
+        for (int i = 0; i < finishing.size(); i++) {
+            finishing.get(i).onExpansionAnimationEnd();
+        }
+        finishing.clear();
+    }
+
+    private class GroupFrameCallback implements FrameClock.Callback {
+        private FrameClock clock;
+        private long durationNanos;
+        private long startTimeNanos;
+        private boolean running;
+        private boolean posted;
+
+        void start(FrameClock clock, long durationNanos) {
+            this.clock = clock;
+            this.durationNanos = durationNanos;
+            startTimeNanos = -1;
+            running = true;
+            post();
+        }
+
+        void cancel() {
+            running = false;
+            if (posted) {
+                clock.removeFrameCallback(this);
+                posted = false;
+            }
+        }
+
+        private void post() {
+            if (!posted) {
+                posted = true;
+                clock.postFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            posted = false;
+            if (!running) {
+                return;
+            }
+            if (startTimeNanos < 0) {
+                startTimeNanos = frameTimeNanos;
+            }
+
+            long elapsed = frameTimeNanos - startTimeNanos;
+            if (elapsed >= durationNanos) {
+                running = false;
+                onAnimationEnd();
+                return;
+            }
+            onAnimationFrame((float) elapsed / durationNanos);
+            // Unless a listener cancelled the animation, or started another one
+            if (running) {
+                post();
+            }
+        }
+    }
+
+    private class GroupAnimationListener implements ValueAnimator.AnimatorUpdateListener, Animator.AnimatorListener {
+        private boolean canceled;
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator valueAnimator) {
+            onAnimationFrame(valueAnimator.getAnimatedFraction());
+        }
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            canceled = false;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (!canceled) {
+                ExpandableGroup.this.onAnimationEnd();
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            canceled = true;
+        }
+
+        @Override
+        public void onAnimationRepeat(Animator animation) {
+        }
+    }
+}
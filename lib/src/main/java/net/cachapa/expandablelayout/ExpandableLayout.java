@@ -2,17 +2,36 @@ package net.cachapa.expandablelayout;
 
 import android.animation.Animator;
 import android.animation.ValueAnimator;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.database.ContentObserver;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcelable;
+import android.provider.Settings;
 import android.util.AttributeSet;
+import android.view.Display;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 import android.widget.FrameLayout;
-import android.widget.LinearLayout;
 
+import java.util.ArrayList;
+
+import net.cachapa.expandablelayout.util.BatchInterpolator;
 import net.cachapa.expandablelayout.util.FastOutSlowInInterpolator;
 
 import static net.cachapa.expandablelayout.ExpandableLayout.State.COLLAPSED;
@@ -35,17 +54,198 @@ public class ExpandableLayout extends FrameLayout {
     public static final int VERTICAL = 1;
 
     private static final int DEFAULT_DURATION = 300;
+    private static final float DEFAULT_REFRESH_RATE = 60;
+
+    // Interpolators are stateless, so a single instance can be shared by all layouts
+    private static final Interpolator DEFAULT_INTERPOLATOR = new FastOutSlowInInterpolator();
+    private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+
+    // Preparations finish through the main looper rather than View.post(), which below API 24
+    // queues runnables posted from other threads while detached where they never run
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // Animator duration scale below API 26, or -1 until it is first read. Only accessed on the
+    // main thread.
+    private static float cachedDurationScale = -1;
 
     private int duration = DEFAULT_DURATION;
+
+    // When positive, the duration is proportional to the distance, see setProportionalDuration()
+    private float durationPerDp;
+    private int minDuration;
+    private int maxDuration;
     private float parallax;
     private float expansion;
     private int orientation;
     private int state;
+    private boolean clipAnimation;
+
+    // Deferred content, created the first time the layout expands
+    private int contentLayoutRes;
+    private ContentFactory contentFactory;
+    private boolean contentCreated;
+    private View contentView;
+
+    // Collapsed content is parked in the pool after a delay, see setContentPool()
+    private ContentPool contentPool;
+    private long contentReleaseDelay;
+    private boolean contentReleaseScheduled;
+    private final Runnable releaseContentRunnable = new Runnable() {
+        @Override
+        public void run() {
+            releaseContent();
+        }
+    };
+
+    // Expansions wait for the content to be prepared, see setContentPreparer()
+    private ContentPreparer contentPreparer;
+    private long preparationTimeout;
+    private Preparation preparation;
+
+    // Parallax is resolved once per orientation or layout direction change, and only reapplied
+    // when the expansion delta changes
+    private boolean layoutRtl;
+    private int parallaxDirection = -1;
+    private int appliedParallaxDelta;
+    private boolean parallaxDirty = true;
+
+    /**
+     * Full size of the content along the expansion axis, as of the last measure pass
+     */
+    private int contentSize;
+
+    /**
+     * Measured and visible sizes along the expansion axis, in whole pixels, as of the last update
+     */
+    private int layoutSize;
+    private int visibleSize;
+
+    /**
+     * Number of expansion updates that didn't need a layout pass, and of those that didn't need
+     * anything at all because the size in whole pixels didn't change. Read by tests.
+     */
+    int skippedLayoutCount;
+    int skippedUpdateCount;
+
+    /**
+     * Number of measure passes (and of those that measured the content rather than reusing the
+     * cache), layout requests, visibility changes and listener dispatches. Read by tests, to
+     * check how much work each animation frame does.
+     */
+    int measureCount;
+    int contentMeasureCount;
+    int layoutRequestCount;
+    int visibilityChangeCount;
+    int expansionUpdateDispatchCount;
+    int stateChangeDispatchCount;
+
+    /**
+     * Fully expanded measured size for the last measure specs, reused while animating
+     */
+    private boolean measureCacheValid;
+    private int cachedWidthMeasureSpec;
+    private int cachedHeightMeasureSpec;
+    private int cachedWidth;
+    private int cachedHeight;
+    private boolean requestingOwnLayout;
+
+    // Pre-measures the collapsed content while the main thread is idle, see setPremeasureOnIdle()
+    private boolean premeasureOnIdle;
+    private boolean premeasureScheduled;
+    private final MessageQueue.IdleHandler premeasureIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            return onPremeasureIdle();
+        }
+    };
 
-    private Interpolator interpolator = new FastOutSlowInInterpolator();
+    private Interpolator interpolator = DEFAULT_INTERPOLATOR;
     private ValueAnimator animator;
+    private final ExpansionListener expansionListener = new ExpansionListener();
+
+    private float animationStartExpansion;
+    private int animationTargetExpansion;
+    private int animationDuration;
+    // The duration scaled by the animator duration scale, which a ValueAnimator applies by itself
+    private long animationDurationNanos;
+
+    // Pixel offsets of every frame of the running animation, precomputed when the interpolator
+    // is a BatchInterpolator
+    private int[] keyframes = new int[0];
+    private int keyframeCount;
+    private int keyframeDistance;
+    private int appliedKeyframeOffset;
+
+    // Consulted before each animation, see setAnimationPolicy()
+    private AnimationPolicy animationPolicy;
+    private final AnimationPolicy.Decision policyDecision = new AnimationPolicy.Decision();
+    private int layoutFrameInterval = 1;
+    private int animationFrameCount;
+    // Time from the first to the last frame, reported to the policy. Frame times come from the
+    // frame clock, so that a ManualFrameClock gets the same decisions however fast it is stepped.
+    private long animationElapsedNanos;
+    // Below API 16, the animator doesn't report frame times, so the elapsed time is measured
+    private long animationStartNanos;
+    private boolean policyApplied;
+
+    // The content drawn into a bitmap once per animation, see setSnapshotAnimation(). The bitmap
+    // is kept between animations and reused while the content keeps its size, snapshot is only
+    // set while it is shown.
+    private boolean snapshotAnimation;
+    private Bitmap snapshot;
+    private boolean snapshotStale;
+    private Bitmap snapshotBitmap;
+    private final Canvas snapshotCanvas = new Canvas();
+
+    private boolean useHardwareLayer;
+    private boolean layerPromoted;
+    private boolean layerStale;
+    private int[] childLayerTypes = new int[0];
+    private boolean updatingChildren;
+
+    // Animations are timed by the frame clock, through the engine shared by the layouts using the
+    // same clock or through one of their own. Below API 16, without a clock, by the animator.
+    private boolean useSharedEngine;
+    private FrameClock frameClock;
+    private AnimationEngine sharedEngine;
+    private AnimationEngine ownEngine;
+    private long engineStartTime;
+    boolean engineLayoutPending;
+
+    // Scrolls the nearest scrolling ancestor along with the expansion, see setKeepInView()
+    private boolean keepInView;
+    private View scrollingAncestor;
+    private float keepInViewStartExpansion;
+    private int keepInViewDistance = -1;
+    private int keepInViewScrolled;
+    private final Rect keepInViewRect = new Rect();
+    private final ViewTreeObserver.OnPreDrawListener keepInViewListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            scrollIntoView();
+            return true;
+        }
+    };
+
+    // Nearest ExpandableLayout ancestor, and number of ExpandableLayouts nested in this one.
+    // Nested layouts always use the shared engine, which animates them in one pass.
+    ExpandableLayout expandableParent;
+    int nestingDepth;
+    private int nestedLayoutCount;
 
     private OnExpansionUpdateListener listener;
+    private final ArrayList<ProgressListener> progressListeners = new ArrayList<ProgressListener>();
+    private final ArrayList<OnExpansionStateChangeListener> stateListeners = new ArrayList<OnExpansionStateChangeListener>();
+    private int dispatchedState;
+
+    // Opt-in per-animation metrics, only recorded while a sink is set
+    private MetricsSink metricsSink;
+    private ExpansionMetrics metrics;
+
+    /**
+     * Key of the item this layout shows, as set by an {@link ExpansionStateHelper}
+     */
+    long boundKey = ExpansionStateHelper.NO_KEY;
 
     public ExpandableLayout(Context context) {
         this(context, null);
@@ -60,10 +260,28 @@ public class ExpandableLayout extends FrameLayout {
             expansion = a.getBoolean(R.styleable.ExpandableLayout_el_expanded, false) ? 1 : 0;
             orientation = a.getInt(R.styleable.ExpandableLayout_android_orientation, VERTICAL);
             parallax = a.getFloat(R.styleable.ExpandableLayout_el_parallax, 1);
+            boolean clipAnimation = a.getBoolean(R.styleable.ExpandableLayout_el_clipAnimation, false);
+            contentLayoutRes = a.getResourceId(R.styleable.ExpandableLayout_el_contentLayout, 0);
+            useSharedEngine = a.getBoolean(R.styleable.ExpandableLayout_el_sharedEngine, false);
+            useHardwareLayer = a.getBoolean(R.styleable.ExpandableLayout_el_hardwareLayer, false);
+            snapshotAnimation = a.getBoolean(R.styleable.ExpandableLayout_el_snapshotAnimation, false);
+            premeasureOnIdle = a.getBoolean(R.styleable.ExpandableLayout_el_premeasure, false);
+            keepInView = a.getBoolean(R.styleable.ExpandableLayout_el_keepInView, false);
+            durationPerDp = a.getFloat(R.styleable.ExpandableLayout_el_durationPerDp, 0);
+            minDuration = a.getInt(R.styleable.ExpandableLayout_el_minDuration, 0);
+            maxDuration = a.getInt(R.styleable.ExpandableLayout_el_maxDuration, duration);
             a.recycle();
 
             state = expansion == 0 ? COLLAPSED : EXPANDED;
+            dispatchedState = state;
             setParallax(parallax);
+            setClipAnimation(clipAnimation);
+        }
+
+        updateParallaxDirection();
+
+        if (expansion > 0) {
+            ensureContent();
         }
     }
 
@@ -85,6 +303,10 @@ public class ExpandableLayout extends FrameLayout {
         Bundle bundle = (Bundle) parcelable;
         expansion = bundle.getFloat(KEY_EXPANSION);
         state = expansion == 1 ? EXPANDED : COLLAPSED;
+        dispatchedState = state;
+        if (expansion > 0) {
+            ensureContent();
+        }
         Parcelable superState = bundle.getParcelable(KEY_SUPER_STATE);
 
         super.onRestoreInstanceState(superState);
@@ -92,44 +314,202 @@ public class ExpandableLayout extends FrameLayout {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        long measureStart = metrics != null ? System.nanoTime() : 0;
+        measureCount++;
 
-        int width = getMeasuredWidth();
-        int height = getMeasuredHeight();
-
-        int size = orientation == LinearLayout.HORIZONTAL ? width : height;
+        if (!isAnimating() || !measureCacheValid
+                || !isMeasureCacheUsable(widthMeasureSpec, heightMeasureSpec)
+                || isChildLayoutRequested()) {
+            measureContent(widthMeasureSpec, heightMeasureSpec);
+        }
+        // Otherwise the children keep their measured sizes from the previous (or pre-measure) pass
+        int width = cachedWidth;
+        int height = cachedHeight;
 
-        setVisibility(expansion == 0 && size == 0 ? GONE : VISIBLE);
+        int size = contentSize;
+        layoutSize = Math.round(size * getLayoutExpansion());
+        visibleSize = Math.round(size * expansion);
 
-        int expansionDelta = size - Math.round(size * expansion);
-        if (parallax > 0) {
-            float parallaxDelta = expansionDelta * parallax;
-            for (int i = 0; i < getChildCount(); i++) {
-                View child = getChildAt(i);
-                if (orientation == HORIZONTAL) {
-                    int direction = -1;
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1 && getLayoutDirection() == LAYOUT_DIRECTION_RTL) {
-                        direction = 1;
-                    }
-                    child.setTranslationX(direction * parallaxDelta);
-                } else {
-                    child.setTranslationY(-parallaxDelta);
-                }
-            }
+        int visibility = expansion == 0 && size == 0 ? GONE : VISIBLE;
+        if (getVisibility() != visibility) {
+            setVisibilityKeepingCache(visibility);
         }
 
+        int expansionDelta = size - layoutSize;
         if (orientation == HORIZONTAL) {
             setMeasuredDimension(width - expansionDelta, height);
         } else {
             setMeasuredDimension(width, height - expansionDelta);
         }
+
+        if (metrics != null) {
+            metrics.recordMeasure(System.nanoTime() - measureStart);
+        }
     }
 
     @Override
-    protected void onConfigurationChanged(Configuration newConfig) {
-        if (animator != null) {
-            animator.cancel();
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        applyParallax();
+    }
+
+    @Override
+    public void onRtlPropertiesChanged(int layoutDirection) {
+        super.onRtlPropertiesChanged(layoutDirection);
+        boolean layoutRtl = layoutDirection == LAYOUT_DIRECTION_RTL;
+        if (this.layoutRtl != layoutRtl) {
+            this.layoutRtl = layoutRtl;
+            updateParallaxDirection();
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        layoutRequestCount++;
+        // Any layout request that doesn't come from an expansion change means the content changed
+        if (!requestingOwnLayout) {
+            measureCacheValid = false;
+            parallaxDirty = true;
+            schedulePremeasure();
+        }
+        super.requestLayout();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        // Ancestors are attached before their descendants
+        ViewParent parent = getParent();
+        while (parent != null && !(parent instanceof ExpandableLayout)) {
+            parent = parent.getParent();
+        }
+        expandableParent = (ExpandableLayout) parent;
+        nestingDepth = expandableParent != null ? expandableParent.nestingDepth + 1 : 0;
+        for (ExpandableLayout ancestor = expandableParent; ancestor != null; ancestor = ancestor.expandableParent) {
+            ancestor.nestedLayoutCount++;
+        }
+
+        schedulePremeasure();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // Descendants are detached before their ancestors, so the chain is still intact
+        for (ExpandableLayout ancestor = expandableParent; ancestor != null; ancestor = ancestor.expandableParent) {
+            ancestor.nestedLayoutCount--;
+        }
+        expandableParent = null;
+        nestingDepth = 0;
+
+        releaseSnapshot();
+        freeSnapshotBitmap();
+        if (preparation != null) {
+            // Times out right away, since there is nothing to animate while detached
+            MAIN_HANDLER.removeCallbacks(preparation.finishRunnable);
+            preparation.cancelled = true;
+            preparation = null;
+            jumpToState(true);
+        }
+        if (premeasureScheduled) {
+            Looper.myQueue().removeIdleHandler(premeasureIdleHandler);
+            premeasureScheduled = false;
+        }
+    }
+
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        parallaxDirty = true;
+        super.addView(child, index, params);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT);
+    }
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams lp) {
+        if (lp instanceof LayoutParams) {
+            return new LayoutParams((LayoutParams) lp);
+        } else if (lp instanceof FrameLayout.LayoutParams) {
+            return new LayoutParams((FrameLayout.LayoutParams) lp);
+        } else if (lp instanceof MarginLayoutParams) {
+            return new LayoutParams((MarginLayoutParams) lp);
+        }
+        return new LayoutParams(lp);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        // Called for content invalidations before API 26
+        onContentInvalidated();
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        // Called for content invalidations from API 26 on
+        onContentInvalidated();
+        super.onDescendantInvalidated(child, target);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (!clipAnimation || expansion == 0 || expansion == 1) {
+            super.draw(canvas);
+            return;
+        }
+
+        // The layout is kept at its full size, so only the visible part is drawn
+        int saveCount = canvas.save();
+        if (orientation == HORIZONTAL) {
+            if (layoutRtl) {
+                canvas.clipRect(getWidth() - visibleSize, 0, getWidth(), getHeight());
+            } else {
+                canvas.clipRect(0, 0, visibleSize, getHeight());
+            }
+        } else {
+            canvas.clipRect(0, 0, getWidth(), visibleSize);
+        }
+        super.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (snapshot == null) {
+            super.dispatchDraw(canvas);
+            return;
+        }
+
+        // The snapshot is drawn like the children would be, with the layout's parallax
+        float offset = parallaxDirection * (contentSize - visibleSize) * parallax;
+        if (orientation == HORIZONTAL) {
+            // Children are laid out from the right edge in RTL, which is not at the full size
+            float start = layoutRtl ? getWidth() - snapshot.getWidth() : 0;
+            canvas.drawBitmap(snapshot, start + offset, 0, null);
+        } else {
+            canvas.drawBitmap(snapshot, 0, offset, null);
         }
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        cancelAnimation();
         super.onConfigurationChanged(newConfig);
     }
 
@@ -142,8 +522,12 @@ public class ExpandableLayout extends FrameLayout {
         return state;
     }
 
+    /**
+     * @return true if the layout is expanded, expanding, or waiting for its content to be prepared
+     * before expanding
+     */
     public boolean isExpanded() {
-        return state == EXPANDING || state == EXPANDED;
+        return state == EXPANDING || state == EXPANDED || preparation != null;
     }
 
     public void toggle() {
@@ -185,12 +569,22 @@ public class ExpandableLayout extends FrameLayout {
         if (expand == isExpanded()) {
             return;
         }
+        if (preparation != null) {
+            // Collapsing before the content is ready leaves the layout collapsed
+            cancelPreparation();
+            if (!expand) {
+                return;
+            }
+        }
 
-        int targetExpansion = expand ? 1 : 0;
         if (animate) {
-            animateSize(targetExpansion);
+            if (expand && contentPreparer != null && state == COLLAPSED) {
+                prepareContent();
+                return;
+            }
+            animateSize(expand ? 1 : 0);
         } else {
-            setExpansion(targetExpansion);
+            jumpToState(expand);
         }
     }
 
@@ -206,6 +600,25 @@ public class ExpandableLayout extends FrameLayout {
         this.duration = duration;
     }
 
+    /**
+     * Makes the duration of each animation proportional to the distance it covers, so small
+     * content finishes in fewer frames. An animation that reverses another one only covers the
+     * remaining distance. Overrides {@link #setDuration(int)} while enabled, as well as the
+     * duration of an {@link ExpandableGroup} the layout is part of.
+     *
+     * @param durationPerDp Milliseconds per dp of distance, or 0 to use the fixed duration
+     * @param minDuration   Minimum duration, in milliseconds
+     * @param maxDuration   Maximum duration, in milliseconds
+     */
+    public void setProportionalDuration(float durationPerDp, int minDuration, int maxDuration) {
+        if (minDuration > maxDuration) {
+            throw new IllegalArgumentException("The minimum duration must not exceed the maximum");
+        }
+        this.durationPerDp = durationPerDp;
+        this.minDuration = minDuration;
+        this.maxDuration = maxDuration;
+    }
+
     public float getExpansion() {
         return expansion;
     }
@@ -215,6 +628,12 @@ public class ExpandableLayout extends FrameLayout {
             return;
         }
 
+        if (expansion > 0) {
+            ensureContent();
+        }
+
+        int previousState = state;
+
         // Infer state from previous value
         float delta = expansion - this.expansion;
         if (expansion == 0) {
@@ -227,15 +646,115 @@ public class ExpandableLayout extends FrameLayout {
             state = EXPANDING;
         }
 
-        setVisibility(state == COLLAPSED ? GONE : VISIBLE);
+        int visibility = state == COLLAPSED ? GONE : VISIBLE;
+        boolean visibilityChanged = getVisibility() != visibility;
+        if (visibilityChanged) {
+            setVisibilityKeepingCache(visibility);
+        }
         this.expansion = expansion;
-        requestLayout();
 
-        if (listener != null) {
-            listener.onExpansionUpdate(expansion, state);
+        // Only do as much work as the change in whole pixels requires. The sizes can only be
+        // trusted if the content hasn't changed since it was last measured.
+        int layoutSize = Math.round(contentSize * getLayoutExpansion());
+        int visibleSize = Math.round(contentSize * expansion);
+        if (!measureCacheValid || visibilityChanged || layoutSize != this.layoutSize) {
+            this.layoutSize = layoutSize;
+            this.visibleSize = visibleSize;
+            requestExpansionLayout();
+        } else if (visibleSize != this.visibleSize) {
+            // Layout-free update: only the clip bounds and child translations change
+            this.visibleSize = visibleSize;
+            skippedLayoutCount++;
+            applyParallax();
+            invalidate();
+        } else {
+            skippedLayoutCount++;
+            skippedUpdateCount++;
+            if (state == previousState) {
+                // Nothing visible changed, so there is nothing to notify either
+                return;
+            }
+        }
+
+        dispatchStateChange();
+        dispatchExpansionUpdate();
+    }
+
+    public int getContentLayout() {
+        return contentLayoutRes;
+    }
+
+    /**
+     * Sets a layout resource that is only inflated into this layout the first time it expands,
+     * so that collapsed layouts don't pay for content that may never be shown. Has no effect if
+     * the content was already created.
+     */
+    public void setContentLayout(int contentLayoutRes) {
+        this.contentLayoutRes = contentLayoutRes;
+        if (expansion > 0) {
+            ensureContent();
+        }
+    }
+
+    /**
+     * Like {@link #setContentLayout(int)}, but creates the content from code
+     */
+    public void setContentFactory(ContentFactory contentFactory) {
+        this.contentFactory = contentFactory;
+        if (expansion > 0) {
+            ensureContent();
         }
     }
 
+    /**
+     * Releases the deferred content (see {@link #setContentLayout(int)} and
+     * {@link #setContentFactory(ContentFactory)}) once the layout has been collapsed for the given
+     * time. The content is parked in the pool, and taken back when the layout expands again. If
+     * it has been evicted from the pool in the meantime, it is created again.
+     *
+     * @param contentPool         The pool to park the content in, which can be shared between
+     *                            layouts, or null to keep the content indefinitely
+     * @param releaseDelayMillis  How long the layout must stay collapsed before its content is
+     *                            released
+     */
+    public void setContentPool(ContentPool contentPool, long releaseDelayMillis) {
+        this.contentPool = contentPool;
+        this.contentReleaseDelay = releaseDelayMillis;
+        if (contentReleaseScheduled) {
+            removeCallbacks(releaseContentRunnable);
+            contentReleaseScheduled = false;
+        }
+        if (state == COLLAPSED) {
+            scheduleContentRelease();
+        }
+    }
+
+    /**
+     * Lets the content be prepared, e.g. by computing text layouts or decoding images on a
+     * background thread, before an animated expansion starts. The content is created first if it
+     * is deferred. The animation starts once the preparation finishes or the timeout elapses,
+     * whichever comes first, and collapsing the layout in the meantime cancels the preparation.
+     * <p>
+     * Only applies to animated expansions from the collapsed state. If the layout is detached
+     * from its window while waiting, e.g. scrolled off screen, the preparation is cancelled and
+     * the layout jumps to the expanded state. Expansions driven by an {@link ExpandableGroup}
+     * don't wait for the preparer.
+     *
+     * @param contentPreparer The preparer, or null to expand right away
+     * @param timeoutMillis   Maximum time to wait for the preparation, or 0 to wait indefinitely
+     */
+    public void setContentPreparer(ContentPreparer contentPreparer, long timeoutMillis) {
+        this.contentPreparer = contentPreparer;
+        this.preparationTimeout = timeoutMillis;
+    }
+
+    /**
+     * @return true if the deferred content was created, or there is no deferred content
+     */
+    public boolean isContentCreated() {
+        return contentCreated || (contentLayoutRes == 0 && contentFactory == null);
+    }
+
     public float getParallax() {
         return parallax;
     }
@@ -244,73 +763,1408 @@ public class ExpandableLayout extends FrameLayout {
         // Make sure parallax is between 0 and 1
         parallax = Math.min(1, Math.max(0, parallax));
         this.parallax = parallax;
+        parallaxDirty = true;
     }
 
-    public int getOrientation() {
-        return orientation;
+    public boolean isUsingSharedEngine() {
+        return useSharedEngine;
     }
 
-    public void setOrientation(int orientation) {
-        if (orientation < 0 || orientation > 1) {
-            throw new IllegalArgumentException("Orientation must be either 0 (horizontal) or 1 (vertical)");
+    /**
+     * When enabled, animations are driven by a single frame callback shared with all other
+     * layouts that use the shared engine of the same {@link FrameClock}, instead of a frame
+     * callback per layout. This reduces the per-frame overhead when many layouts animate at the
+     * same time.
+     * <p>
+     * Layouts nested in one another always use the shared engine, regardless of this setting, so
+     * that their updates are combined into a single layout pass per frame. Like a
+     * {@link ValueAnimator}, the engine honors the system animator duration scale.
+     * <p>
+     * Below API 16, layouts without a frame clock always use a {@link ValueAnimator}.
+     */
+    public void setUseSharedEngine(boolean useSharedEngine) {
+        if (this.useSharedEngine != useSharedEngine) {
+            cancelAnimation();
+            this.useSharedEngine = useSharedEngine;
         }
-        this.orientation = orientation;
     }
 
-    public void setOnExpansionUpdateListener(OnExpansionUpdateListener listener) {
-        this.listener = listener;
+    public boolean isUsingHardwareLayer() {
+        return useHardwareLayer;
     }
 
-    private void animateSize(int targetExpansion) {
-        if (animator != null) {
-            animator.cancel();
-            animator = null;
+    /**
+     * When enabled, the children are rendered into hardware layers while an animation runs, so
+     * that complex content is rasterized once and then only composited on every frame. A child
+     * that is invalidated during the animation is taken off its layer for the rest of it, since
+     * the layer would have to be redrawn on every frame anyway.
+     * <p>
+     * Only has an effect when the window is hardware accelerated.
+     */
+    public void setUseHardwareLayer(boolean useHardwareLayer) {
+        this.useHardwareLayer = useHardwareLayer;
+        if (!useHardwareLayer) {
+            demoteFromLayer();
+        }
+    }
+
+    public boolean isKeepInView() {
+        return keepInView;
+    }
+
+    /**
+     * When enabled, expanding scrolls the nearest scrolling ancestor (e.g. a RecyclerView or a
+     * ScrollView) just enough to bring the expanded content into view, without scrolling the
+     * start of the layout out of it. The distance is computed once when the animation starts,
+     * and the ancestor scrolls in step with the expansion.
+     */
+    public void setKeepInView(boolean keepInView) {
+        this.keepInView = keepInView;
+        if (!keepInView) {
+            stopKeepingInView();
         }
+    }
+
+    public boolean isPremeasureOnIdle() {
+        return premeasureOnIdle;
+    }
 
-        animator = ValueAnimator.ofFloat(expansion, targetExpansion);
-        animator.setInterpolator(interpolator);
-        animator.setDuration(duration);
+    /**
+     * When enabled, the content of the collapsed layout is measured and laid out at its expanded
+     * size while the main thread is idle (see {@link #premeasure()}), and again whenever it
+     * changes. Deferred content that hasn't been created yet is left alone.
+     */
+    public void setPremeasureOnIdle(boolean premeasureOnIdle) {
+        this.premeasureOnIdle = premeasureOnIdle;
+        if (premeasureOnIdle) {
+            schedulePremeasure();
+        }
+    }
 
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                setExpansion((float) valueAnimator.getAnimatedValue());
+    /**
+     * Measures and lays out the content of a collapsed layout at its expanded size ahead of time,
+     * so that the first frame of the next expansion can reuse the result instead of measuring the
+     * whole content. Creates the deferred content, if any.
+     * <p>
+     * The measure specs the parent will use are guessed from the previous ones or from the size
+     * of the parent, so the result is discarded if the parent measures the layout differently.
+     *
+     * @return true if the content has been measured, false if the layout isn't collapsed or its
+     * parent hasn't been laid out yet
+     */
+    public boolean premeasure() {
+        if (state != COLLAPSED) {
+            return false;
+        }
+        ensureContent();
+        if (measureCacheValid && !isChildLayoutRequested()) {
+            return true;
+        }
+
+        int widthMeasureSpec;
+        int heightMeasureSpec;
+        if (cachedWidthMeasureSpec != 0 || cachedHeightMeasureSpec != 0) {
+            widthMeasureSpec = cachedWidthMeasureSpec;
+            heightMeasureSpec = cachedHeightMeasureSpec;
+        } else {
+            ViewParent parent = getParent();
+            if (!(parent instanceof ViewGroup) || ((ViewGroup) parent).getWidth() == 0) {
+                return false;
+            }
+            ViewGroup group = (ViewGroup) parent;
+            ViewGroup.LayoutParams lp = getLayoutParams();
+            int horizontalPadding = group.getPaddingLeft() + group.getPaddingRight();
+            int verticalPadding = group.getPaddingTop() + group.getPaddingBottom();
+            if (lp instanceof MarginLayoutParams) {
+                MarginLayoutParams mlp = (MarginLayoutParams) lp;
+                horizontalPadding += mlp.leftMargin + mlp.rightMargin;
+                verticalPadding += mlp.topMargin + mlp.bottomMargin;
+            }
+
+            // The cross axis fills the parent as it is now, the expansion axis takes its natural size
+            int unspecified = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            if (orientation == HORIZONTAL) {
+                widthMeasureSpec = getChildMeasureSpec(unspecified, 0, lp.width);
+                heightMeasureSpec = getChildMeasureSpec(
+                        MeasureSpec.makeMeasureSpec(group.getHeight(), MeasureSpec.EXACTLY), verticalPadding, lp.height);
+            } else {
+                widthMeasureSpec = getChildMeasureSpec(
+                        MeasureSpec.makeMeasureSpec(group.getWidth(), MeasureSpec.EXACTLY), horizontalPadding, lp.width);
+                heightMeasureSpec = getChildMeasureSpec(unspecified, 0, lp.height);
             }
-        });
+        }
 
-        animator.addListener(new ExpansionListener(targetExpansion));
+        // The layout itself keeps its collapsed measured size
+        int measuredWidth = getMeasuredWidthAndState();
+        int measuredHeight = getMeasuredHeightAndState();
+        measureContent(widthMeasureSpec, heightMeasureSpec);
+        // Laying out the children clears their layout requests, so the cache is used on the first frame
+        super.onLayout(false, 0, 0, cachedWidth, cachedHeight);
+        setMeasuredDimension(measuredWidth, measuredHeight);
 
-        animator.start();
+        // Creating the content cancelled any pending release
+        scheduleContentRelease();
+        return true;
     }
 
-    public interface OnExpansionUpdateListener {
-        /**
-         * Callback for expansion updates
-         *
-         * @param expansionFraction Value between 0 (collapsed) and 1 (expanded) representing the the expansion progress
-         * @param state             One of {@link State} repesenting the current expansion state
-         */
-        void onExpansionUpdate(float expansionFraction, int state);
+    public boolean isSnapshotAnimation() {
+        return snapshotAnimation;
     }
 
-    private class ExpansionListener implements Animator.AnimatorListener {
-        private int targetExpansion;
-        private boolean canceled;
+    /**
+     * When enabled, the content is drawn into a bitmap when an animation starts, and the
+     * animation reveals the bitmap instead of drawing the content on every frame. This suits
+     * content that is expensive to draw, such as charts or web pages. The bitmap is drawn with
+     * the parallax of the layout, ignoring that of individual children.
+     * <p>
+     * The live content is shown again from the frame after it is invalidated during the
+     * animation, and once the animation ends. Content that can't be drawn into a bitmap (e.g. a SurfaceView)
+     * isn't suitable for this mode. If drawing the content into a software bitmap fails, e.g.
+     * because it shows hardware bitmaps, the animation draws the live content instead.
+     * <p>
+     * The bitmap is kept while the layout is attached and reused as long as the content keeps
+     * its size.
+     */
+    public void setSnapshotAnimation(boolean snapshotAnimation) {
+        this.snapshotAnimation = snapshotAnimation;
+        if (!snapshotAnimation) {
+            releaseSnapshot();
+            freeSnapshotBitmap();
+        }
+    }
+
+    public boolean isClipAnimation() {
+        return clipAnimation;
+    }
+
+    /**
+     * When enabled, the layout takes its full size as soon as it starts expanding and keeps it
+     * until it is fully collapsed. Intermediate values only change the clip bounds and the child
+     * translations, so the parent is laid out once at the start and once at the end of each
+     * animation instead of on every frame.
+     */
+    public void setClipAnimation(boolean clipAnimation) {
+        if (this.clipAnimation == clipAnimation) {
+            return;
+        }
+        this.clipAnimation = clipAnimation;
+        if (clipAnimation) {
+            // Make sure draw() gets called even without a background, so the clip is applied
+            setWillNotDraw(false);
+        }
+        requestExpansionLayout();
+    }
 
-        public ExpansionListener(int targetExpansion) {
-            this.targetExpansion = targetExpansion;
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public void setOrientation(int orientation) {
+        if (orientation < 0 || orientation > 1) {
+            throw new IllegalArgumentException("Orientation must be either 0 (horizontal) or 1 (vertical)");
+        }
+        if (this.orientation == orientation) {
+            return;
+        }
+
+        // Clear the translations along the previous axis
+        updatingChildren = true;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            ViewGroup.LayoutParams lp = child.getLayoutParams();
+            if (lp instanceof LayoutParams) {
+                ((LayoutParams) lp).appliedTranslation = 0;
+            }
+            if (this.orientation == HORIZONTAL) {
+                child.setTranslationX(0);
+            } else {
+                child.setTranslationY(0);
+            }
+        }
+        updatingChildren = false;
+
+        this.orientation = orientation;
+        updateParallaxDirection();
+        requestLayout();
+    }
+
+    /**
+     * Sets a policy that is consulted before each animation, and can shorten it, skip it or
+     * reduce the number of frames that update the layout, e.g. {@link DefaultAnimationPolicy}.
+     * Animations driven by an {@link ExpandableGroup} don't consult the policy.
+     *
+     * @param animationPolicy The policy, or null to always animate for the full duration
+     */
+    public void setAnimationPolicy(AnimationPolicy animationPolicy) {
+        this.animationPolicy = animationPolicy;
+    }
+
+    /**
+     * Drives the animations of this layout from the given clock instead of the
+     * {@code Choreographer}. With a {@link ManualFrameClock}, the animations are stepped frame by
+     * frame, which also works below API 16. Animations driven by an {@link ExpandableGroup} use
+     * the clock of the group, see {@link ExpandableGroup#setFrameClock(FrameClock)}.
+     *
+     * @param frameClock The clock, or null to use the {@code Choreographer}
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        if (this.frameClock == frameClock) {
+            return;
+        }
+        cancelAnimation();
+        this.frameClock = frameClock;
+        sharedEngine = null;
+        ownEngine = null;
+    }
+
+    public FrameClock getFrameClock() {
+        return frameClock;
+    }
+
+    /**
+     * Reports an {@link ExpansionMetrics} record for every animation of this layout to the given
+     * sink, or stops recording if it is null
+     */
+    public void setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+    }
+
+    /**
+     * Sets a listener that is called on every expansion update, replacing the previously set one.
+     * Listeners added with {@link #addOnExpansionUpdateListener} are not affected.
+     */
+    public void setOnExpansionUpdateListener(OnExpansionUpdateListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a listener that is called on every expansion update
+     */
+    public void addOnExpansionUpdateListener(OnExpansionUpdateListener listener) {
+        addOnExpansionUpdateListener(listener, 0, 0);
+    }
+
+    /**
+     * Adds a listener that is only called once the expansion has moved by at least
+     * {@code fractionStep} or {@code pixelStep} since the last time it was called, whichever
+     * happens first. State changes and the fully collapsed and expanded positions are always
+     * delivered. A step of 0 disables that criterion, and if both are 0 every update is delivered.
+     *
+     * @param fractionStep Minimum change in the expansion fraction, between 0 and 1
+     * @param pixelStep    Minimum change in the visible size, in pixels
+     */
+    public void addOnExpansionUpdateListener(OnExpansionUpdateListener listener, float fractionStep, int pixelStep) {
+        if (fractionStep < 0 || pixelStep < 0) {
+            throw new IllegalArgumentException("Steps must not be negative");
+        }
+        progressListeners.add(new ProgressListener(listener, fractionStep, pixelStep, expansion, visibleSize, state));
+    }
+
+    public void removeOnExpansionUpdateListener(OnExpansionUpdateListener listener) {
+        for (int i = progressListeners.size() - 1; i >= 0; i--) {
+            if (progressListeners.get(i).listener == listener) {
+                progressListeners.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is only called when the {@link State} changes
+     */
+    public void addOnExpansionStateChangeListener(OnExpansionStateChangeListener listener) {
+        stateListeners.add(listener);
+    }
+
+    public void removeOnExpansionStateChangeListener(OnExpansionStateChangeListener listener) {
+        stateListeners.remove(listener);
+    }
+
+    /**
+     * Forces the children to be measured again on the next layout pass. Only needed if the
+     * content changes size during an animation without calling {@link View#requestLayout()}.
+     */
+    public void markContentDirty() {
+        measureCacheValid = false;
+        requestLayout();
+    }
+
+    private boolean isAnimating() {
+        return state == EXPANDING || state == COLLAPSING;
+    }
+
+    /**
+     * A child's layout request stops propagating when this layout already has one pending, so
+     * the children need to be checked as well
+     */
+    private boolean isChildLayoutRequested() {
+        for (int i = 0; i < getChildCount(); i++) {
+            if (getChildAt(i).isLayoutRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Measures the content at its expanded size and stores the result in the measure cache
+     */
+    private void measureContent(int widthMeasureSpec, int heightMeasureSpec) {
+        contentMeasureCount++;
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        cachedWidthMeasureSpec = widthMeasureSpec;
+        cachedHeightMeasureSpec = heightMeasureSpec;
+        cachedWidth = getMeasuredWidth();
+        cachedHeight = getMeasuredHeight();
+        measureCacheValid = true;
+        contentSize = orientation == HORIZONTAL ? cachedWidth : cachedHeight;
+    }
+
+    /**
+     * The cached measurement can be reused if the cross axis spec hasn't changed. Along the
+     * expansion axis, a measurement of the natural size (as done when pre-measuring) also holds
+     * for any spec it fits in, which is the same rule RecyclerView applies to its children.
+     */
+    private boolean isMeasureCacheUsable(int widthMeasureSpec, int heightMeasureSpec) {
+        if (orientation == HORIZONTAL) {
+            return heightMeasureSpec == cachedHeightMeasureSpec
+                    && fitsMeasureSpec(widthMeasureSpec, cachedWidthMeasureSpec, cachedWidth);
+        }
+        return widthMeasureSpec == cachedWidthMeasureSpec
+                && fitsMeasureSpec(heightMeasureSpec, cachedHeightMeasureSpec, cachedHeight);
+    }
+
+    private static boolean fitsMeasureSpec(int measureSpec, int cachedMeasureSpec, int cachedSize) {
+        if (measureSpec == cachedMeasureSpec) {
+            return true;
+        }
+        if (MeasureSpec.getMode(cachedMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            return false;
+        }
+        int size = MeasureSpec.getSize(measureSpec);
+        switch (MeasureSpec.getMode(measureSpec)) {
+            case MeasureSpec.UNSPECIFIED:
+                return true;
+            case MeasureSpec.AT_MOST:
+                return cachedSize <= size;
+            default:
+                return cachedSize == size;
+        }
+    }
+
+    /**
+     * Showing or hiding the layout doesn't change its content, so it keeps the measure cache
+     */
+    private void setVisibilityKeepingCache(int visibility) {
+        visibilityChangeCount++;
+        boolean requesting = requestingOwnLayout;
+        requestingOwnLayout = true;
+        setVisibility(visibility);
+        requestingOwnLayout = requesting;
+    }
+
+    private void schedulePremeasure() {
+        if (!premeasureOnIdle || premeasureScheduled || state != COLLAPSED || getWindowToken() == null) {
+            return;
+        }
+        premeasureScheduled = true;
+        Looper.myQueue().addIdleHandler(premeasureIdleHandler);
+    }
+
+    /**
+     * @return true to stay registered, while the parent hasn't been laid out yet
+     */
+    private boolean onPremeasureIdle() {
+        boolean done = !premeasureOnIdle || state != COLLAPSED || !isContentCreated() || premeasure();
+        premeasureScheduled = !done;
+        return !done;
+    }
+
+    /**
+     * Requests a layout pass caused by an expansion change, which keeps the measure cache valid
+     */
+    void requestExpansionLayout() {
+        // Expansions changed from a frame of the engine are laid out at the end of the frame
+        AnimationEngine engine = isEngineShared() && isFrameClockAvailable() ? getAnimationEngine() : ownEngine;
+        if (engine != null && engine.deferLayout(this)) {
+            return;
+        }
+        requestingOwnLayout = true;
+        requestLayout();
+        requestingOwnLayout = false;
+    }
+
+    /**
+     * The expansion used to compute the measured size. In clip mode, any partial expansion is
+     * laid out at full size and clipped while drawing.
+     */
+    private float getLayoutExpansion() {
+        return clipAnimation && expansion > 0 ? 1 : expansion;
+    }
+
+    private void ensureContent() {
+        if (contentReleaseScheduled) {
+            removeCallbacks(releaseContentRunnable);
+            contentReleaseScheduled = false;
+        }
+        if (contentCreated) {
+            return;
+        }
+
+        // Content taken back from the pool is reattached as it was parked
+        View content = contentPool != null ? contentPool.reclaim(getContentType(), this) : null;
+        if (content == null && contentFactory != null) {
+            content = contentFactory.onCreateContent(this);
+        } else if (content == null && contentLayoutRes != 0) {
+            content = LayoutInflater.from(getContext()).inflate(contentLayoutRes, this, false);
+        } else if (content == null) {
+            return;
+        }
+
+        contentCreated = true;
+        contentView = content;
+        if (content != null) {
+            // Invalidates the measure cache, so the new content is measured on the first frame
+            addView(content);
+        }
+    }
+
+    /**
+     * Layouts using the same content factory or the same content layout share a type in the pool
+     */
+    private Object getContentType() {
+        return contentFactory != null ? contentFactory : contentLayoutRes;
+    }
+
+    private void prepareContent() {
+        ensureContent();
+        preparation = new Preparation();
+        if (preparationTimeout > 0) {
+            MAIN_HANDLER.postDelayed(preparation.finishRunnable, preparationTimeout);
+        }
+        contentPreparer.onPrepareContent(this, preparation);
+    }
+
+    private void onPreparationFinished(Preparation preparation) {
+        if (preparation != this.preparation) {
+            // Finished after the timeout, or cancelled
+            return;
+        }
+        MAIN_HANDLER.removeCallbacks(preparation.finishRunnable);
+        this.preparation = null;
+        animateSize(1);
+    }
+
+    private void cancelPreparation() {
+        if (preparation == null) {
+            return;
+        }
+        MAIN_HANDLER.removeCallbacks(preparation.finishRunnable);
+        preparation.cancelled = true;
+        preparation = null;
+        if (state == COLLAPSED) {
+            scheduleContentRelease();
+        }
+    }
+
+    private void scheduleContentRelease() {
+        // Only content that was created lazily can be released, since it can be created again
+        if (contentPool == null || contentView == null || contentReleaseScheduled) {
+            return;
+        }
+        contentReleaseScheduled = true;
+        postDelayed(releaseContentRunnable, contentReleaseDelay);
+    }
+
+    private void releaseContent() {
+        contentReleaseScheduled = false;
+        if (state != COLLAPSED || contentView == null || contentView.getParent() != this) {
+            return;
+        }
+
+        View content = contentView;
+        removeView(content);
+        contentView = null;
+        contentCreated = false;
+        if (contentPool != null) {
+            contentPool.park(getContentType(), this, content);
+        }
+    }
+
+    private void updateParallaxDirection() {
+        parallaxDirection = orientation == HORIZONTAL && layoutRtl ? 1 : -1;
+        parallaxDirty = true;
+    }
+
+    /**
+     * Translates the children according to their parallax factor. Runs after layout rather than
+     * during measure, and skips the children entirely when the visible size hasn't changed.
+     */
+    private void applyParallax() {
+        if (snapshot != null) {
+            // The children aren't drawn, their translations are applied once the snapshot is gone
+            return;
+        }
+        int expansionDelta = contentSize - visibleSize;
+        if (expansionDelta == appliedParallaxDelta && !parallaxDirty) {
+            return;
+        }
+        appliedParallaxDelta = expansionDelta;
+        parallaxDirty = false;
+
+        updatingChildren = true;
+        float offset = parallaxDirection * expansionDelta;
+        boolean horizontal = orientation == HORIZONTAL;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            ViewGroup.LayoutParams params = child.getLayoutParams();
+            LayoutParams lp = params instanceof LayoutParams ? (LayoutParams) params : null;
+
+            float childParallax = lp == null || Float.isNaN(lp.parallax) ? parallax : lp.parallax;
+            float translation = offset * childParallax;
+            if (lp != null) {
+                if (lp.appliedTranslation == translation) {
+                    continue;
+                }
+                lp.appliedTranslation = translation;
+            }
+
+            if (horizontal) {
+                child.setTranslationX(translation);
+            } else {
+                child.setTranslationY(translation);
+            }
+        }
+        updatingChildren = false;
+    }
+
+    private void promoteToLayer() {
+        if (layerPromoted || !useHardwareLayer || !isHardwareAccelerated()) {
+            return;
+        }
+
+        int childCount = getChildCount();
+        if (childLayerTypes.length < childCount) {
+            childLayerTypes = new int[childCount];
+        }
+
+        updatingChildren = true;
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            childLayerTypes[i] = child.getLayerType();
+            child.setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+        updatingChildren = false;
+        layerPromoted = true;
+        layerStale = false;
+    }
+
+    private void demoteFromLayer() {
+        if (!layerPromoted) {
+            return;
+        }
+
+        updatingChildren = true;
+        // Children added during the animation were never promoted
+        int childCount = Math.min(getChildCount(), childLayerTypes.length);
+        for (int i = 0; i < childCount; i++) {
+            getChildAt(i).setLayerType(childLayerTypes[i], null);
+        }
+        updatingChildren = false;
+        layerPromoted = false;
+    }
+
+    private void onContentInvalidated() {
+        if (updatingChildren) {
+            return;
+        }
+        if (layerPromoted) {
+            // Demoted on the next frame rather than in the middle of an invalidation
+            layerStale = true;
+        }
+        if (snapshot != null) {
+            // The content changed, so the live content is shown from the next frame on
+            snapshotStale = true;
+        }
+    }
+
+    /**
+     * Draws the content, laid out at its full size, into a bitmap
+     */
+    private void captureSnapshot() {
+        if (snapshot != null || (state != COLLAPSED && state != EXPANDED)) {
+            // Reversing an animation keeps the snapshot it started with
+            return;
+        }
+        // Lays out the content of a collapsed layout at its full size
+        if (state == COLLAPSED && !premeasure()) {
+            return;
+        }
+        if (!measureCacheValid || isChildLayoutRequested() || cachedWidth <= 0 || cachedHeight <= 0) {
+            return;
+        }
+
+        Bitmap bitmap = snapshotBitmap;
+        if (bitmap != null && bitmap.getWidth() == cachedWidth && bitmap.getHeight() == cachedHeight) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            freeSnapshotBitmap();
+            try {
+                bitmap = Bitmap.createBitmap(cachedWidth, cachedHeight, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                return;
+            }
+            snapshotBitmap = bitmap;
+        }
+
+        // Setting the bitmap also resets the state left by a previous capture
+        Canvas canvas = snapshotCanvas;
+        canvas.setBitmap(bitmap);
+        try {
+            for (int i = 0; i < getChildCount(); i++) {
+                View child = getChildAt(i);
+                if (child.getVisibility() != VISIBLE) {
+                    continue;
+                }
+                // Drawn without the parallax translations, which are applied when drawing the bitmap
+                int saveCount = canvas.save();
+                canvas.translate(child.getLeft() - child.getScrollX(), child.getTop() - child.getScrollY());
+                child.draw(canvas);
+                canvas.restoreToCount(saveCount);
+            }
+        } catch (RuntimeException e) {
+            // E.g. hardware bitmaps, which can't be drawn into a software canvas from API 26 on.
+            // The partial bitmap is dropped and the animation draws the live content.
+            freeSnapshotBitmap();
+            return;
+        }
+        snapshot = bitmap;
+    }
+
+    private void freeSnapshotBitmap() {
+        if (snapshotBitmap == null) {
+            return;
+        }
+        snapshotCanvas.setBitmap(null);
+        snapshotBitmap.recycle();
+        snapshotBitmap = null;
+    }
+
+    private void releaseSnapshot() {
+        snapshotStale = false;
+        if (snapshot == null) {
+            return;
+        }
+        // The bitmap is kept for the next animation
+        snapshot = null;
+        parallaxDirty = true;
+        applyParallax();
+        invalidate();
+    }
+
+    private boolean isFrameClockAvailable() {
+        return frameClock != null || android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    private boolean isEngineShared() {
+        // Nested layouts are switched to the shared engine even if they didn't opt in
+        return useSharedEngine || expandableParent != null || nestedLayoutCount > 0;
+    }
+
+    /**
+     * @return The engine shared by the layouts using the same clock, or the one of this layout
+     */
+    private AnimationEngine getAnimationEngine() {
+        FrameClock clock = frameClock != null ? frameClock : ChoreographerFrameClock.getInstance();
+        if (isEngineShared()) {
+            if (sharedEngine == null) {
+                sharedEngine = AnimationEngine.forClock(clock);
+            }
+            return sharedEngine;
+        }
+        if (ownEngine == null) {
+            ownEngine = new AnimationEngine(clock);
+        }
+        return ownEngine;
+    }
+
+    /**
+     * Marks the views from this layout up to an ancestor that requests a layout in the same
+     * frame, instead of walking up the whole tree once for each of them
+     */
+    void forceLayoutUpTo(ExpandableLayout ancestor) {
+        forceLayout();
+        ViewParent parent = getParent();
+        while (parent != ancestor && parent instanceof View) {
+            ((View) parent).forceLayout();
+            if (parent instanceof ExpandableLayout) {
+                ((ExpandableLayout) parent).onNestedSizeChanged();
+            }
+            parent = parent.getParent();
+        }
+        ancestor.onNestedSizeChanged();
+    }
+
+    /**
+     * The size of a nested layout changed, so the content has to be measured again
+     */
+    private void onNestedSizeChanged() {
+        measureCacheValid = false;
+        parallaxDirty = true;
+    }
+
+    private void animateSize(int targetExpansion) {
+        stopAnimation();
+
+        float durationScale = getAnimatorDurationScale(getContext());
+        if (durationScale == 0) {
+            // Animations are turned off
+            jumpToState(targetExpansion == 1);
+            return;
+        }
+
+        animationDuration = getAnimationDuration(targetExpansion);
+        layoutFrameInterval = 1;
+        policyApplied = animationPolicy != null;
+        if (policyApplied) {
+            policyDecision.reset(animationDuration);
+            animationPolicy.onAnimationStart(this, policyDecision);
+            animationDuration = policyDecision.getDuration();
+            layoutFrameInterval = policyDecision.getLayoutFrameInterval();
+            if (animationDuration == 0) {
+                // Also drops the layers and the snapshot of the animation this one replaces
+                jumpToState(targetExpansion == 1);
+                return;
+            }
+        }
+
+        animationDurationNanos = Math.round(animationDuration * 1e6 * durationScale);
+        animationStartExpansion = expansion;
+        animationTargetExpansion = targetExpansion;
+        animationFrameCount = 0;
+        animationElapsedNanos = 0;
+        prepareKeyframes();
+
+        if (isFrameClockAvailable()) {
+            engineStartTime = -1;
+            onExpansionAnimationStart();
+            getAnimationEngine().start(this);
+            return;
+        }
+
+        // Below API 16, the animator and its listener are created once and reused for every
+        // animation
+        if (animator == null) {
+            animator = ValueAnimator.ofFloat(0, 1);
+            animator.setInterpolator(LINEAR_INTERPOLATOR);
+            animator.addUpdateListener(expansionListener);
+            animator.addListener(expansionListener);
+        }
+        animator.setDuration(animationDuration);
+        animationStartNanos = System.nanoTime();
+        animator.start();
+    }
+
+    /**
+     * Precomputes the size of every frame, so that frames only look up the next offset and the
+     * frames that don't change the size in whole pixels are known in advance
+     */
+    private void prepareKeyframes() {
+        keyframeCount = 0;
+        // Until the content has been measured once, frames are interpolated one by one
+        if (!(interpolator instanceof BatchInterpolator) || contentSize == 0) {
+            return;
+        }
+        int distance = Math.round(Math.abs(animationTargetExpansion - animationStartExpansion) * contentSize);
+        if (distance == 0) {
+            return;
+        }
+
+        int frameCount = Math.max(1, (int) Math.ceil(animationDurationNanos * getRefreshRate() / 1e9));
+        if (keyframes.length < frameCount) {
+            keyframes = new int[frameCount];
+        }
+        ((BatchInterpolator) interpolator).fillPixels(keyframes, frameCount, distance);
+        keyframeCount = frameCount;
+        keyframeDistance = distance;
+        appliedKeyframeOffset = 0;
+    }
+
+    float getRefreshRate() {
+        if (frameClock != null && frameClock.getRefreshRate() > 0) {
+            return frameClock.getRefreshRate();
+        }
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = getDisplay();
+            if (display != null && display.getRefreshRate() > 0) {
+                return display.getRefreshRate();
+            }
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    /**
+     * @return The system animator duration scale, or 0 if animations are turned off
+     */
+    static float getAnimatorDurationScale(Context context) {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
+            return ValueAnimator.getDurationScale();
+        }
+        // Reading the setting parses it on every call, so it is read once and then updated by an
+        // observer
+        if (cachedDurationScale < 0) {
+            final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+            cachedDurationScale = readAnimatorDurationScale(resolver);
+            resolver.registerContentObserver(getAnimatorDurationScaleUri(), false, new ContentObserver(MAIN_HANDLER) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    cachedDurationScale = readAnimatorDurationScale(resolver);
+                }
+            });
+        }
+        return cachedDurationScale;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static float readAnimatorDurationScale(ContentResolver resolver) {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 1);
+        }
+        return Settings.System.getFloat(resolver, Settings.System.ANIMATOR_DURATION_SCALE, 1);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Uri getAnimatorDurationScaleUri() {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE);
+        }
+        return Settings.System.getUriFor(Settings.System.ANIMATOR_DURATION_SCALE);
+    }
+
+    private int getAnimationDuration(int targetExpansion) {
+        if (durationPerDp <= 0) {
+            return duration;
+        }
+        if (contentSize == 0 && !premeasure()) {
+            // The distance is unknown until the content has been measured
+            return maxDuration;
+        }
+        float distance = Math.abs(targetExpansion - expansion) * contentSize / getResources().getDisplayMetrics().density;
+        return Math.max(minDuration, Math.min(maxDuration, Math.round(distance * durationPerDp)));
+    }
+
+    void cancelAnimation() {
+        stopAnimation();
+        demoteFromLayer();
+        releaseSnapshot();
+    }
+
+    /**
+     * Cancels any animation and jumps to the collapsed or expanded state
+     */
+    void jumpToState(boolean expanded) {
+        cancelAnimation();
+        setEndState(expanded ? 1 : 0);
+    }
+
+    /**
+     * Sets the collapsed or expanded state. Unlike {@link #setExpansion(float)}, this also leaves
+     * the animation state when the expansion already has its final value, as it does on the first
+     * frame of an animation.
+     */
+    private void setEndState(int targetExpansion) {
+        if (expansion != targetExpansion) {
+            // The state is inferred from the expansion
+            setExpansion(targetExpansion);
+            return;
+        }
+        int endState = targetExpansion == 0 ? COLLAPSED : EXPANDED;
+        if (state == endState) {
+            return;
+        }
+
+        state = endState;
+        // The size doesn't change, only the visibility may
+        int visibility = state == COLLAPSED ? GONE : VISIBLE;
+        if (getVisibility() != visibility) {
+            setVisibilityKeepingCache(visibility);
+        }
+        dispatchStateChange();
+        dispatchExpansionUpdate();
+    }
+
+    /**
+     * Stops the running animation without leaving the animation state, so that a new one can
+     * take over
+     */
+    private void stopAnimation() {
+        if (animator != null) {
+            animator.cancel();
+        }
+        cancelPreparation();
+        stopKeepingInView();
+        // Nesting may have changed since the animation started, so both engines are checked
+        if (sharedEngine != null) {
+            sharedEngine.cancel(this);
+        }
+        if (ownEngine != null) {
+            ownEngine.cancel(this);
+        }
+        finishMetrics(true);
+    }
+
+    /**
+     * Advances the animation driven by the engine
+     *
+     * @return false once the animation has finished
+     */
+    boolean doAnimationFrame(long frameTimeNanos) {
+        if (engineStartTime < 0) {
+            engineStartTime = frameTimeNanos;
+        }
+
+        long elapsed = frameTimeNanos - engineStartTime;
+        animationElapsedNanos = elapsed;
+        if (elapsed >= animationDurationNanos) {
+            onExpansionAnimationEnd();
+            return false;
+        }
+
+        onExpansionAnimationFrame((float) elapsed / animationDurationNanos);
+        return true;
+    }
+
+    /**
+     * Starts an animation that is driven from outside, e.g. by an {@link ExpandableGroup}, which
+     * then calls {@link #onExternalAnimationFrame} and {@link #onExpansionAnimationEnd}
+     *
+     * @param defaultDuration Duration of the animation, unless this layout has a proportional
+     *                        duration
+     * @return The duration of the animation of this layout, in milliseconds
+     */
+    int beginExternalAnimation(int targetExpansion, int defaultDuration) {
+        stopAnimation();
+        animationDuration = durationPerDp > 0 ? getAnimationDuration(targetExpansion) : defaultDuration;
+        layoutFrameInterval = 1;
+        keyframeCount = 0;
+        policyApplied = false;
+        animationFrameCount = 0;
+        animationStartExpansion = expansion;
+        animationTargetExpansion = targetExpansion;
+        onExpansionAnimationStart();
+        return animationDuration;
+    }
+
+    /**
+     * Advances an animation started by {@link #beginExternalAnimation}. A layout with a shorter
+     * duration than the driving animation reaches its end early and stays there.
+     *
+     * @param fraction        Linear fraction of the driving animation
+     * @param drivingDuration Duration of the driving animation, at least that of this layout
+     */
+    void onExternalAnimationFrame(float fraction, int drivingDuration) {
+        onExpansionAnimationFrame(animationDuration <= 0 ? 1 : Math.min(1, fraction * drivingDuration / animationDuration));
+    }
+
+    private void onExpansionAnimationStart() {
+        if (metricsSink != null) {
+            metrics = new ExpansionMetrics(animationTargetExpansion > 0, System.nanoTime());
+        }
+        if (animationTargetExpansion > 0) {
+            ensureContent();
+        }
+        if (snapshotAnimation) {
+            captureSnapshot();
+        }
+        if (snapshot == null) {
+            promoteToLayer();
+        }
+        if (keepInView && animationTargetExpansion > 0) {
+            startKeepingInView();
+        }
+        state = animationTargetExpansion == 0 ? COLLAPSING : EXPANDING;
+        dispatchStateChange();
+    }
+
+    private void startKeepingInView() {
+        scrollingAncestor = findScrollingAncestor();
+        if (scrollingAncestor == null || expansion >= 1) {
+            scrollingAncestor = null;
+            return;
+        }
+        if (contentSize == 0) {
+            premeasure();
+        }
+        keepInViewStartExpansion = expansion;
+        // Computed on the first frame, once the layout has been positioned
+        keepInViewDistance = -1;
+        keepInViewScrolled = 0;
+        getViewTreeObserver().addOnPreDrawListener(keepInViewListener);
+    }
+
+    private void stopKeepingInView() {
+        if (scrollingAncestor == null) {
+            return;
+        }
+        scrollingAncestor = null;
+        getViewTreeObserver().removeOnPreDrawListener(keepInViewListener);
+    }
+
+    private View findScrollingAncestor() {
+        ViewParent parent = getParent();
+        while (parent instanceof View) {
+            View view = (View) parent;
+            boolean scrollable = orientation == HORIZONTAL
+                    ? view.canScrollHorizontally(1) || view.canScrollHorizontally(-1)
+                    : view.canScrollVertically(1) || view.canScrollVertically(-1);
+            if (scrollable || view.isScrollContainer()) {
+                return view;
+            }
+            parent = view.getParent();
+        }
+        return null;
+    }
+
+    private void scrollIntoView() {
+        if (state != EXPANDING && state != EXPANDED) {
+            stopKeepingInView();
+            return;
+        }
+
+        View ancestor = scrollingAncestor;
+        if (keepInViewDistance < 0) {
+            if (!(ancestor instanceof ViewGroup)) {
+                stopKeepingInView();
+                return;
+            }
+            Rect rect = keepInViewRect;
+            rect.set(0, 0, getWidth(), getHeight());
+            ((ViewGroup) ancestor).offsetDescendantRectToMyCoords(this, rect);
+
+            // Scroll until the end of the expanded layout is visible, but not past its start
+            int start;
+            int overflow;
+            if (orientation == HORIZONTAL) {
+                start = rect.left - ancestor.getScrollX() - ancestor.getPaddingLeft();
+                overflow = rect.left - ancestor.getScrollX() + contentSize - (ancestor.getWidth() - ancestor.getPaddingRight());
+            } else {
+                start = rect.top - ancestor.getScrollY() - ancestor.getPaddingTop();
+                overflow = rect.top - ancestor.getScrollY() + contentSize - (ancestor.getHeight() - ancestor.getPaddingBottom());
+            }
+            keepInViewDistance = Math.max(0, Math.min(overflow, start));
+        }
+
+        float progress = (expansion - keepInViewStartExpansion) / (1 - keepInViewStartExpansion);
+        int scrolled = Math.round(keepInViewDistance * Math.max(0, Math.min(1, progress)));
+        if (scrolled != keepInViewScrolled) {
+            if (orientation == HORIZONTAL) {
+                ancestor.scrollBy(scrolled - keepInViewScrolled, 0);
+            } else {
+                ancestor.scrollBy(0, scrolled - keepInViewScrolled);
+            }
+            keepInViewScrolled = scrolled;
+        }
+
+        if (state == EXPANDED) {
+            stopKeepingInView();
+        }
+    }
+
+    void onExpansionAnimationFrame(float linearFraction) {
+        animationFrameCount++;
+        if (layoutFrameInterval > 1 && (animationFrameCount - 1) % layoutFrameInterval != 0) {
+            // Dropped by the animation policy, the end state is always applied
+            onUnchangedFrame();
+            return;
+        }
+        if (layerStale) {
+            demoteFromLayer();
+        }
+        if (snapshotStale) {
+            releaseSnapshot();
+        }
+
+        float fraction;
+        if (keyframeCount > 0) {
+            // The nearest keyframe, see BatchInterpolator
+            int frame = Math.min(Math.round(linearFraction * keyframeCount), keyframeCount) - 1;
+            int offset = frame < 0 ? 0 : keyframes[frame];
+            if (offset == appliedKeyframeOffset) {
+                onUnchangedFrame();
+                return;
+            }
+            appliedKeyframeOffset = offset;
+            fraction = (float) offset / keyframeDistance;
+        } else {
+            fraction = interpolator.getInterpolation(linearFraction);
+        }
+        float previousExpansion = expansion;
+        int previousSkippedUpdates = skippedUpdateCount;
+        setExpansion(animationStartExpansion + (animationTargetExpansion - animationStartExpansion) * fraction);
+
+        ExpansionMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.frameCount++;
+            if (expansion == previousExpansion || skippedUpdateCount != previousSkippedUpdates) {
+                metrics.unchangedFrameCount++;
+            }
+        }
+    }
+
+    private void onUnchangedFrame() {
+        if (metrics != null) {
+            metrics.frameCount++;
+            metrics.unchangedFrameCount++;
+        }
+    }
+
+    void onExpansionAnimationEnd() {
+        demoteFromLayer();
+        releaseSnapshot();
+        setEndState(animationTargetExpansion);
+        finishMetrics(false);
+        if (policyApplied && animationPolicy != null) {
+            animationPolicy.onAnimationEnd(this, animationFrameCount, animationElapsedNanos);
+        }
+    }
+
+    private void finishMetrics(boolean cancelled) {
+        ExpansionMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return;
+        }
+        this.metrics = null;
+        metrics.cancelled = cancelled;
+        metrics.durationNanos = System.nanoTime() - metrics.startTimeNanos;
+        if (metricsSink != null) {
+            metricsSink.onExpansionMetrics(this, metrics);
+        }
+    }
+
+    private void dispatchStateChange() {
+        if (state == dispatchedState) {
+            return;
+        }
+        dispatchedState = state;
+
+        if (state == COLLAPSED) {
+            scheduleContentRelease();
+            schedulePremeasure();
+        }
+
+        stateChangeDispatchCount++;
+
+        // Listeners may cancel the animation, which reports the metrics
+        ExpansionMetrics metrics = this.metrics;
+        long listenerStart = metrics != null ? System.nanoTime() : 0;
+        for (int i = 0; i < stateListeners.size(); i++) {
+            stateListeners.get(i).onExpansionStateChange(state);
+        }
+        if (metrics != null) {
+            metrics.listenerNanos += System.nanoTime() - listenerStart;
+        }
+    }
+
+    private void dispatchExpansionUpdate() {
+        expansionUpdateDispatchCount++;
+        ExpansionMetrics metrics = this.metrics;
+        long listenerStart = metrics != null ? System.nanoTime() : 0;
+        if (listener != null) {
+            listener.onExpansionUpdate(expansion, state);
+        }
+        for (int i = 0; i < progressListeners.size(); i++) {
+            progressListeners.get(i).update(expansion, visibleSize, state);
+        }
+        if (metrics != null) {
+            metrics.listenerNanos += System.nanoTime() - listenerStart;
+        }
+    }
+
+    public static class LayoutParams extends FrameLayout.LayoutParams {
+        /**
+         * Parallax factor for this child, between 0 and 1. {@link Float#NaN} (the default) uses
+         * the parallax of the ExpandableLayout.
+         */
+        public float parallax = Float.NaN;
+
+        /**
+         * Last translation applied by the parallax, so unchanged children can be skipped
+         */
+        float appliedTranslation;
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+            TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.ExpandableLayout_Layout);
+            if (a.hasValue(R.styleable.ExpandableLayout_Layout_layout_el_parallax)) {
+                parallax = Math.min(1, Math.max(0, a.getFloat(R.styleable.ExpandableLayout_Layout_layout_el_parallax, 0)));
+            }
+            a.recycle();
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(int width, int height, int gravity) {
+            super(width, height, gravity);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(MarginLayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(FrameLayout.LayoutParams source) {
+            // The FrameLayout.LayoutParams copy constructor requires API 19
+            super((MarginLayoutParams) source);
+            gravity = source.gravity;
+        }
+
+        public LayoutParams(LayoutParams source) {
+            this((FrameLayout.LayoutParams) source);
+            parallax = source.parallax;
+        }
+    }
+
+    public interface ContentFactory {
+        /**
+         * Called the first time the layout expands
+         *
+         * @param parent The layout the content will be added to, for generating layout params
+         * @return The content view, which is added to the layout, or null if the factory added
+         * the content itself
+         */
+        View onCreateContent(ExpandableLayout parent);
+    }
+
+    public interface ContentPreparer {
+        /**
+         * Called on the main thread when the layout is about to expand. The work should be done
+         * on a background thread, calling {@link Preparation#finish()} when it is done.
+         *
+         * @param layout      The layout about to expand, with its content already created
+         * @param preparation Handle to report the end of the preparation with
+         */
+        void onPrepareContent(ExpandableLayout layout, Preparation preparation);
+    }
+
+    /**
+     * A pending content preparation, see {@link #setContentPreparer(ContentPreparer, long)}
+     */
+    public final class Preparation {
+        private volatile boolean cancelled;
+        private final Runnable finishRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onPreparationFinished(Preparation.this);
+            }
+        };
+
+        private Preparation() {
+        }
+
+        /**
+         * Starts the expansion, unless the preparation was cancelled or timed out. Can be called
+         * from any thread.
+         */
+        public void finish() {
+            MAIN_HANDLER.post(finishRunnable);
+        }
+
+        /**
+         * @return true if the layout was collapsed before the preparation finished, in which
+         * case the work can be abandoned
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public interface MetricsSink {
+        /**
+         * Called on the main thread when an animation finishes or is cancelled
+         *
+         * @param layout  The layout that was animated
+         * @param metrics The record of the animation, which is not reused
+         */
+        void onExpansionMetrics(ExpandableLayout layout, ExpansionMetrics metrics);
+    }
+
+    public interface OnExpansionUpdateListener {
+        /**
+         * Callback for expansion updates
+         *
+         * @param expansionFraction Value between 0 (collapsed) and 1 (expanded) representing the the expansion progress
+         * @param state             One of {@link State} repesenting the current expansion state
+         */
+        void onExpansionUpdate(float expansionFraction, int state);
+    }
+
+    public interface OnExpansionStateChangeListener {
+        /**
+         * Callback for expansion state changes
+         *
+         * @param state One of {@link State} representing the new expansion state
+         */
+        void onExpansionStateChange(int state);
+    }
+
+    private static class ProgressListener {
+        private final OnExpansionUpdateListener listener;
+        private final float fractionStep;
+        private final int pixelStep;
+        private float lastFraction;
+        private int lastPixels;
+        private int lastState;
+
+        ProgressListener(OnExpansionUpdateListener listener, float fractionStep, int pixelStep, float expansion, int pixels, int state) {
+            this.listener = listener;
+            this.fractionStep = fractionStep;
+            this.pixelStep = pixelStep;
+            this.lastFraction = expansion;
+            this.lastPixels = pixels;
+            this.lastState = state;
+        }
+
+        void update(float fraction, int pixels, int state) {
+            boolean deliver = state != lastState || fraction == 0 || fraction == 1
+                    || (fractionStep == 0 && pixelStep == 0)
+                    || (fractionStep > 0 && Math.abs(fraction - lastFraction) >= fractionStep)
+                    || (pixelStep > 0 && Math.abs(pixels - lastPixels) >= pixelStep);
+            if (!deliver) {
+                return;
+            }
+
+            lastFraction = fraction;
+            lastPixels = pixels;
+            lastState = state;
+            listener.onExpansionUpdate(fraction, state);
+        }
+    }
+
+    private class ExpansionListener implements ValueAnimator.AnimatorUpdateListener, Animator.AnimatorListener {
+        private boolean canceled;
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator valueAnimator) {
+            // The animator runs linearly from 0 to 1 so that it doesn't need to be recreated
+            // when the start value, target or interpolator change
+            onExpansionAnimationFrame(valueAnimator.getAnimatedFraction());
         }
 
         @Override
         public void onAnimationStart(Animator animation) {
-            state = targetExpansion == 0 ? COLLAPSING : EXPANDING;
+            canceled = false;
+            onExpansionAnimationStart();
         }
 
         @Override
         public void onAnimationEnd(Animator animation) {
             if (!canceled) {
-                state = targetExpansion == 0 ? COLLAPSED : EXPANDED;
-                setExpansion(targetExpansion);
+                animationElapsedNanos = System.nanoTime() - animationStartNanos;
+                onExpansionAnimationEnd();
             }
         }
 
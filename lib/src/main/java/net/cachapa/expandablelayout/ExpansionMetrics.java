@@ -0,0 +1,109 @@
+package net.cachapa.expandablelayout;
+
+/**
+ * Performance record of a single expansion or collapse animation, reported to the
+ * {@link ExpandableLayout.MetricsSink} set with
+ * {@link ExpandableLayout#setMetricsSink(ExpandableLayout.MetricsSink)}.
+ * <p>
+ * Times are measured on the main thread with {@link System#nanoTime()}. Measure passes are only
+ * counted while the animation runs, so the final layout pass after the last frame isn't included.
+ */
+public final class ExpansionMetrics {
+    final boolean expanding;
+    final long startTimeNanos;
+    long durationNanos;
+    int frameCount;
+    int unchangedFrameCount;
+    int measureCount;
+    long totalMeasureNanos;
+    long maxMeasureNanos;
+    long listenerNanos;
+    boolean cancelled;
+
+    ExpansionMetrics(boolean expanding, long startTimeNanos) {
+        this.expanding = expanding;
+        this.startTimeNanos = startTimeNanos;
+    }
+
+    /**
+     * @return true for an expansion, false for a collapse
+     */
+    public boolean isExpanding() {
+        return expanding;
+    }
+
+    /**
+     * @return Wall time from the start of the animation until it finished or was cancelled
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Number of animation frames delivered to the layout
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Number of frames in which the size didn't change by a whole pixel, so there was
+     * nothing to lay out or draw
+     */
+    public int getUnchangedFrameCount() {
+        return unchangedFrameCount;
+    }
+
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    /**
+     * @return Total time spent in {@code onMeasure}, including the content
+     */
+    public long getTotalMeasureNanos() {
+        return totalMeasureNanos;
+    }
+
+    public long getMaxMeasureNanos() {
+        return maxMeasureNanos;
+    }
+
+    /**
+     * @return Total time spent in expansion update and state change listeners
+     */
+    public long getListenerNanos() {
+        return listenerNanos;
+    }
+
+    /**
+     * @return true if the animation was interrupted, e.g. by a configuration change or by
+     * another animation taking over
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void recordMeasure(long nanos) {
+        measureCount++;
+        totalMeasureNanos += nanos;
+        if (nanos > maxMeasureNanos) {
+            maxMeasureNanos = nanos;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ExpansionMetrics{"
+                + (expanding ? "expanding" : "collapsing")
+                + (cancelled ? ", cancelled" : "")
+                + ", durationMs=" + durationNanos / 1000000f
+                + ", frames=" + frameCount
+                + ", unchangedFrames=" + unchangedFrameCount
+                + ", measures=" + measureCount
+                + ", totalMeasureMs=" + totalMeasureNanos / 1000000f
+                + ", maxMeasureMs=" + maxMeasureNanos / 1000000f
+                + ", listenerMs=" + listenerNanos / 1000000f
+                + "}";
+    }
+}
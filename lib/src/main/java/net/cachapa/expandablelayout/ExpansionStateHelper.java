@@ -0,0 +1,146 @@
+package net.cachapa.expandablelayout;
+
+import android.os.Bundle;
+
+/**
+ * Keeps track of which items of a list are expanded, for use from a RecyclerView adapter.
+ * <p>
+ * Items are identified by a key, which should be the stable id of the item when the adapter has
+ * stable ids, or otherwise its adapter position. The expanded keys are stored in a primitive
+ * hash set, so binding doesn't box or allocate, and collapsed items take no memory at all.
+ * <p>
+ * Call {@link #bind} from {@code onBindViewHolder} and use {@link #toggle} (or
+ * {@link #setExpanded}) from the click handlers. When a layout is recycled in the middle of an
+ * animation and bound to a different item, the animation is cancelled and the layout jumps to
+ * the state of its new item. Rebinding a layout to the same item leaves a running animation alone.
+ */
+public class ExpansionStateHelper {
+    public static final String KEY_EXPANDED = "expansion_state_helper_expanded";
+
+    /**
+     * Value of {@link ExpandableLayout#boundKey} for layouts that haven't been bound
+     */
+    static final long NO_KEY = LongHashSet.EMPTY;
+
+    private final LongHashSet expandedKeys = new LongHashSet();
+    private final boolean singleExpansion;
+
+    // Only used in single expansion mode
+    private long expandedKey = NO_KEY;
+    private ExpandableLayout expandedLayout;
+
+    public ExpansionStateHelper() {
+        this(false);
+    }
+
+    /**
+     * @param singleExpansion Whether expanding an item collapses the one that was expanded
+     */
+    public ExpansionStateHelper(boolean singleExpansion) {
+        this.singleExpansion = singleExpansion;
+    }
+
+    public boolean isExpanded(long key) {
+        return expandedKeys.contains(key);
+    }
+
+    /**
+     * Shows the state of the item with the given key in a layout
+     */
+    public void bind(ExpandableLayout layout, long key) {
+        checkKey(key);
+        boolean expanded = expandedKeys.contains(key);
+        if (expanded && singleExpansion) {
+            expandedLayout = layout;
+        } else if (expandedLayout == layout) {
+            expandedLayout = null;
+        }
+
+        if (layout.boundKey == key && layout.isExpanded() == expanded) {
+            // Already showing or animating towards the right state
+            return;
+        }
+        layout.boundKey = key;
+        layout.jumpToState(expanded);
+    }
+
+    public void toggle(ExpandableLayout layout, long key) {
+        setExpanded(layout, key, !expandedKeys.contains(key), true);
+    }
+
+    public void setExpanded(ExpandableLayout layout, long key, boolean expand) {
+        setExpanded(layout, key, expand, true);
+    }
+
+    /**
+     * Changes the state of an item and of the layout it is bound to
+     */
+    public void setExpanded(ExpandableLayout layout, long key, boolean expand, boolean animate) {
+        checkKey(key);
+        layout.boundKey = key;
+        setExpanded(key, expand);
+        if (expand && singleExpansion) {
+            expandedLayout = layout;
+        }
+        layout.setExpanded(expand, animate);
+    }
+
+    /**
+     * Changes the state of an item that isn't necessarily visible. In single expansion mode, the
+     * layout of the previously expanded item is collapsed if it is still bound to it.
+     */
+    public void setExpanded(long key, boolean expand) {
+        checkKey(key);
+        if (!expand) {
+            expandedKeys.remove(key);
+            if (key == expandedKey) {
+                expandedKey = NO_KEY;
+                expandedLayout = null;
+            }
+            return;
+        }
+
+        if (singleExpansion && expandedKey != NO_KEY && expandedKey != key) {
+            expandedKeys.remove(expandedKey);
+            if (expandedLayout != null && expandedLayout.boundKey == expandedKey) {
+                expandedLayout.collapse();
+            }
+            expandedLayout = null;
+        }
+        expandedKeys.add(key);
+        if (singleExpansion) {
+            expandedKey = key;
+        }
+    }
+
+    public void collapseAll() {
+        expandedKeys.clear();
+        expandedKey = NO_KEY;
+        expandedLayout = null;
+    }
+
+    public void saveState(Bundle outState) {
+        outState.putLongArray(KEY_EXPANDED, expandedKeys.toArray());
+    }
+
+    public void restoreState(Bundle savedState) {
+        if (savedState == null) {
+            return;
+        }
+        long[] keys = savedState.getLongArray(KEY_EXPANDED);
+        if (keys == null) {
+            return;
+        }
+
+        collapseAll();
+        for (long key : keys) {
+            setExpanded(key, true);
+        }
+    }
+
+    private static void checkKey(long key) {
+        if (key == NO_KEY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE is not a valid key");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package net.cachapa.expandablelayout;
+
+/**
+ * Source of animation frames for {@link ExpandableLayout}s and {@link ExpandableGroup}s, see
+ * {@link ExpandableLayout#setFrameClock(FrameClock)}. By default, frames come from the
+ * {@code Choreographer}. A {@link ManualFrameClock} delivers them on demand instead, so that
+ * animations can be stepped frame by frame in tests and benchmarks.
+ */
+public interface FrameClock {
+    /**
+     * Runs the callback once, on the next frame
+     */
+    void postFrameCallback(Callback callback);
+
+    /**
+     * Removes a callback that was posted and hasn't run yet, e.g. when an animation is cancelled
+     */
+    void removeFrameCallback(Callback callback);
+
+    /**
+     * @return The rate at which frames are delivered, in frames per second, or 0 if it is the
+     * refresh rate of the display
+     */
+    float getRefreshRate();
+
+    interface Callback {
+        /**
+         * @param frameTimeNanos The time at which the frame started, in the
+         *                       {@link System#nanoTime()} time base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+}
@@ -0,0 +1,126 @@
+package net.cachapa.expandablelayout;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs using open addressing with linear probing, so that lookups and updates
+ * don't box or allocate. {@link #EMPTY} can't be stored.
+ */
+final class LongHashSet {
+    static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+
+    LongHashSet() {
+        keys = new long[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(long key) {
+        int i = indexOf(key);
+        return keys[i] == key && key != EMPTY;
+    }
+
+    boolean add(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE can't be stored");
+        }
+        int i = indexOf(key);
+        if (keys[i] == key) {
+            return false;
+        }
+
+        // Keep the load factor under 3/4
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+            i = indexOf(key);
+        }
+        keys[i] = key;
+        size++;
+        return true;
+    }
+
+    boolean remove(long key) {
+        if (key == EMPTY) {
+            return false;
+        }
+        int gap = indexOf(key);
+        if (keys[gap] != key) {
+            return false;
+        }
+
+        // Shift back the following keys of the same run that would otherwise become unreachable
+        int j = gap;
+        while (true) {
+            j = (j + 1) & mask;
+            long current = keys[j];
+            if (current == EMPTY) {
+                break;
+            }
+            int home = hash(current);
+            boolean reachable = gap <= j ? (home > gap && home <= j) : (home > gap || home <= j);
+            if (!reachable) {
+                keys[gap] = current;
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it would be inserted
+     */
+    private int indexOf(long key) {
+        int i = hash(key);
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                keys[indexOf(key)] = key;
+            }
+        }
+    }
+}
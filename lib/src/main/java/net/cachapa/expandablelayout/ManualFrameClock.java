@@ -0,0 +1,110 @@
+package net.cachapa.expandablelayout;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link FrameClock} that only delivers a frame when {@link #step()} is called, advancing its
+ * time by exactly one frame interval. Animations driven by it are deterministic and don't need a
+ * device, so the cost of each frame can be measured in JVM tests and benchmarks, at any refresh
+ * rate.
+ * <p>
+ * Not thread safe, it should be stepped from the thread the layouts live on.
+ */
+public class ManualFrameClock implements FrameClock {
+    private final float refreshRate;
+    private final long frameIntervalNanos;
+    private long frameTimeNanos;
+
+    // Callbacks posted while a frame runs go to the next frame, so two lists are swapped
+    private ArrayList<Callback> callbacks = new ArrayList<Callback>();
+    private ArrayList<Callback> running = new ArrayList<Callback>();
+
+    /**
+     * @param refreshRate Frames per second, e.g. 60, 90 or 120
+     */
+    public ManualFrameClock(float refreshRate) {
+        this(refreshRate, 0);
+    }
+
+    /**
+     * @param refreshRate    Frames per second, e.g. 60, 90 or 120
+     * @param startTimeNanos Time of the first frame, minus one frame interval
+     */
+    public ManualFrameClock(float refreshRate, long startTimeNanos) {
+        if (refreshRate <= 0) {
+            throw new IllegalArgumentException("The refresh rate must be positive");
+        }
+        this.refreshRate = refreshRate;
+        this.frameIntervalNanos = Math.round(1e9 / refreshRate);
+        this.frameTimeNanos = startTimeNanos;
+    }
+
+    @Override
+    public void postFrameCallback(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    @Override
+    public void removeFrameCallback(Callback callback) {
+        callbacks.remove(callback);
+    }
+
+    @Override
+    public float getRefreshRate() {
+        return refreshRate;
+    }
+
+    public long getFrameIntervalNanos() {
+        return frameIntervalNanos;
+    }
+
+    /**
+     * @return The time of the last frame
+     */
+    public long getFrameTimeNanos() {
+        return frameTimeNanos;
+    }
+
+    /**
+     * @return true if a callback is waiting for the next frame
+     */
+    public boolean hasPendingFrame() {
+        return !callbacks.isEmpty();
+    }
+
+    /**
+     * Advances the time by one frame interval and runs the callbacks posted until now
+     */
+    public void step() {
+        frameTimeNanos += frameIntervalNanos;
+
+        ArrayList<Callback> swap = running;
+        running = callbacks;
+        callbacks = swap;
+        for (int i = 0; i < running.size(); i++) {
+            running.get(i).doFrame(frameTimeNanos);
+        }
+        running.clear();
+    }
+
+    public void step(int frames) {
+        for (int i = 0; i < frames; i++) {
+            step();
+        }
+    }
+
+    /**
+     * Steps until no callback is waiting, e.g. until all animations have finished
+     *
+     * @param maxFrames Maximum number of frames to step, to avoid looping forever
+     * @return The number of frames stepped
+     */
+    public int stepUntilIdle(int maxFrames) {
+        int frames = 0;
+        while (frames < maxFrames && hasPendingFrame()) {
+            step();
+            frames++;
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,25 @@
+package net.cachapa.expandablelayout.util;
+
+import android.view.animation.Interpolator;
+
+/**
+ * An {@link Interpolator} that can compute the values for all the frames of an animation at once,
+ * so that they can be replayed without any per-frame computation.
+ * <p>
+ * Frame {@code i} of an animation with {@code frameCount} frames is the one at input
+ * {@code (i + 1) / frameCount}, so the last frame always has the final value. At input {@code t},
+ * an animation shows the nearest frame, {@code round(t * frameCount) - 1}, and the start value
+ * during the first half frame.
+ */
+public interface BatchInterpolator extends Interpolator {
+    /**
+     * Fills the first {@code frameCount} values with the interpolation at each frame
+     */
+    void fill(float[] values, int frameCount);
+
+    /**
+     * Fills the first {@code frameCount} values with the offset in whole pixels at each frame of
+     * an animation that covers the given distance
+     */
+    void fillPixels(int[] offsets, int frameCount, int distance);
+}
@@ -0,0 +1,148 @@
+package net.cachapa.expandablelayout.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Interpolator for an arbitrary cubic Bezier curve from (0,0) to (1,1), equivalent to
+ * {@code PathInterpolator(x1, y1, x2, y2)} but with the same per-frame cost as
+ * {@link FastOutSlowInInterpolator}.
+ *
+ * The curve is sampled into a lookup table the first time a set of control points is used. The
+ * table is kept in a small process-wide cache of the most recently used curves, and shared by
+ * every interpolator with the same control points.
+ */
+public class CubicBezierInterpolator extends LookupTableInterpolator {
+
+    /**
+     * Number of points sampled from the curve, the same as {@link FastOutSlowInInterpolator}
+     */
+    private static final int TABLE_SIZE = 201;
+
+    private static final float EPSILON = 1e-6f;
+    private static final int NEWTON_ITERATIONS = 8;
+    private static final int BISECTION_ITERATIONS = 32;
+
+    private static final int CACHE_SIZE = 16;
+
+    // Least recently used curves are evicted, so computed control points can't grow the cache
+    private static final LinkedHashMap<CacheKey, LookupTable> CACHE = new LinkedHashMap<CacheKey, LookupTable>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, LookupTable> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param x1 x coordinate of the first control point, between 0 and 1
+     * @param y1 y coordinate of the first control point
+     * @param x2 x coordinate of the second control point, between 0 and 1
+     * @param y2 y coordinate of the second control point
+     */
+    public CubicBezierInterpolator(float x1, float y1, float x2, float y2) {
+        super(getTable(x1, y1, x2, y2));
+    }
+
+    private static LookupTable getTable(float x1, float y1, float x2, float y2) {
+        if (x1 < 0 || x1 > 1 || x2 < 0 || x2 > 1) {
+            throw new IllegalArgumentException("The x coordinates of the control points must be between 0 and 1");
+        }
+
+        CacheKey key = new CacheKey(x1, y1, x2, y2);
+        synchronized (CACHE) {
+            LookupTable table = CACHE.get(key);
+            if (table != null) {
+                return table;
+            }
+        }
+
+        // Sampled outside the lock, a curve sampled twice at the same time is harmless
+        LookupTable table = new LookupTable(sample(x1, y1, x2, y2));
+        synchronized (CACHE) {
+            CACHE.put(key, table);
+        }
+        return table;
+    }
+
+    private static float[] sample(float x1, float y1, float x2, float y2) {
+        // Polynomial coefficients, with x(t) = ((ax * t + bx) * t + cx) * t and likewise for y
+        float cx = 3 * x1;
+        float bx = 3 * (x2 - x1) - cx;
+        float ax = 1 - cx - bx;
+        float cy = 3 * y1;
+        float by = 3 * (y2 - y1) - cy;
+        float ay = 1 - cy - by;
+
+        float[] values = new float[TABLE_SIZE];
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            float x = (float) i / (TABLE_SIZE - 1);
+            float t = solveT(x, ax, bx, cx);
+            values[i] = ((ay * t + by) * t + cy) * t;
+        }
+        return values;
+    }
+
+    /**
+     * Finds t such that x(t) = x, using Newton-Raphson iterations and falling back to bisection
+     * where the derivative is too flat
+     */
+    private static float solveT(float x, float ax, float bx, float cx) {
+        float t = x;
+        for (int i = 0; i < NEWTON_ITERATIONS; i++) {
+            float error = ((ax * t + bx) * t + cx) * t - x;
+            if (Math.abs(error) < EPSILON) {
+                return t;
+            }
+            float derivative = (3 * ax * t + 2 * bx) * t + cx;
+            if (Math.abs(derivative) < EPSILON) {
+                break;
+            }
+            t -= error / derivative;
+        }
+
+        float low = 0;
+        float high = 1;
+        t = x;
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            float sample = ((ax * t + bx) * t + cx) * t;
+            if (Math.abs(sample - x) < EPSILON) {
+                break;
+            }
+            if (x > sample) {
+                low = t;
+            } else {
+                high = t;
+            }
+            t = (low + high) / 2;
+        }
+        return t;
+    }
+
+    /**
+     * The control points of a curve, compared by their bit patterns
+     */
+    private static final class CacheKey {
+        final int x1, y1, x2, y2;
+
+        CacheKey(float x1, float y1, float x2, float y2) {
+            this.x1 = Float.floatToIntBits(x1);
+            this.y1 = Float.floatToIntBits(y1);
+            this.x2 = Float.floatToIntBits(x2);
+            this.y2 = Float.floatToIntBits(y2);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return x1 == other.x1 && y1 == other.y1 && x2 == other.x2 && y2 == other.y2;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((x1 * 31 + y1) * 31 + x2) * 31 + y2;
+        }
+    }
+}
@@ -63,8 +63,10 @@ public class FastOutSlowInInterpolator extends LookupTableInterpolator {
             0.9998f, 0.9999f, 0.9999f, 1.0000f, 1.0000f
     };
 
+    private static final LookupTable TABLE = new LookupTable(VALUES);
+
     public FastOutSlowInInterpolator() {
-        super(VALUES);
+        super(TABLE);
     }
 
 }
@@ -0,0 +1,26 @@
+package net.cachapa.expandablelayout.util;
+
+/**
+ * Precomputed line segments between the values of a lookup table sampled at regular intervals
+ * between 0 and 1. Each segment stores its slope and its intercept at x = 0, so that evaluating
+ * it is a single multiply-add. Tables are immutable and can be shared between interpolators.
+ */
+final class LookupTable {
+    final float[] slopes;
+    final float[] intercepts;
+
+    LookupTable(float[] values) {
+        if (values.length < 2) {
+            throw new IllegalArgumentException("A lookup table needs at least 2 values");
+        }
+
+        int segments = values.length - 1;
+        float stepSize = 1f / segments;
+        slopes = new float[segments];
+        intercepts = new float[segments];
+        for (int i = 0; i < segments; i++) {
+            slopes[i] = (values[i + 1] - values[i]) / stepSize;
+            intercepts[i] = values[i] - slopes[i] * (i * stepSize);
+        }
+    }
+}
@@ -22,14 +22,20 @@ import android.view.animation.Interpolator;
  * An {@link Interpolator} that uses a lookup table to compute an interpolation based on a
  * given input.
  */
-abstract class LookupTableInterpolator implements Interpolator {
+abstract class LookupTableInterpolator implements BatchInterpolator {
 
-    private final float[] mValues;
-    private final float mStepSize;
+    private final float[] mSlopes;
+    private final float[] mIntercepts;
+    private final int mSegments;
 
     public LookupTableInterpolator(float[] values) {
-        mValues = values;
-        mStepSize = 1f / (mValues.length - 1);
+        this(new LookupTable(values));
+    }
+
+    LookupTableInterpolator(LookupTable table) {
+        mSlopes = table.slopes;
+        mIntercepts = table.intercepts;
+        mSegments = mSlopes.length;
     }
 
     @Override
@@ -41,17 +47,42 @@ abstract class LookupTableInterpolator implements Interpolator {
             return 0f;
         }
 
-        // Calculate index - We use min with length - 2 to avoid IndexOutOfBoundsException when
-        // we lerp (linearly interpolate) in the return statement
-        int position = Math.min((int) (input * (mValues.length - 1)), mValues.length - 2);
+        // Calculate index - We use min with the last segment to avoid IndexOutOfBoundsException
+        // due to rounding when the input is very close to 1
+        int position = Math.min((int) (input * mSegments), mSegments - 1);
 
-        // Calculate values to account for small offsets as the lookup table has discrete values
-        float quantized = position * mStepSize;
-        float diff = input - quantized;
-        float weight = diff / mStepSize;
+        // Evaluate the line segment, which linearly interpolates between the table values
+        return mIntercepts[position] + mSlopes[position] * input;
+    }
 
-        // Linearly interpolate between the table values
-        return mValues[position] + weight * (mValues[position + 1] - mValues[position]);
+    @Override
+    public void fill(float[] values, int frameCount) {
+        // The inputs only increase, so the segment is found by walking forward instead of
+        // computing its index for every frame
+        float step = 1f / frameCount;
+        int position = 0;
+        for (int i = 0; i < frameCount - 1; i++) {
+            float input = (i + 1) * step;
+            while (position < mSegments - 1 && input * mSegments >= position + 1) {
+                position++;
+            }
+            values[i] = mIntercepts[position] + mSlopes[position] * input;
+        }
+        values[frameCount - 1] = 1f;
+    }
+
+    @Override
+    public void fillPixels(int[] offsets, int frameCount, int distance) {
+        float step = 1f / frameCount;
+        int position = 0;
+        for (int i = 0; i < frameCount - 1; i++) {
+            float input = (i + 1) * step;
+            while (position < mSegments - 1 && input * mSegments >= position + 1) {
+                position++;
+            }
+            offsets[i] = Math.round(distance * (mIntercepts[position] + mSlopes[position] * input));
+        }
+        offsets[frameCount - 1] = distance;
     }
 
 }
@@ -0,0 +1,228 @@
+package net.cachapa.expandablelayout;
+
+import android.content.pm.ApplicationInfo;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static net.cachapa.expandablelayout.ExpandableLayout.HORIZONTAL;
+import static net.cachapa.expandablelayout.ExpandableLayout.State.COLLAPSED;
+import static net.cachapa.expandablelayout.ExpandableLayout.State.COLLAPSING;
+import static net.cachapa.expandablelayout.ExpandableLayout.State.EXPANDED;
+import static net.cachapa.expandablelayout.ExpandableLayout.State.EXPANDING;
+import static net.cachapa.expandablelayout.ExpandableLayout.VERTICAL;
+import static net.cachapa.expandablelayout.TestHost.CONTENT_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steps animations frame by frame and checks how much work each frame does, so that regressions
+ * in the measure path fail the build
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ExpandableLayoutFrameTest {
+    private TestHost host;
+
+    @Before
+    public void setUp() {
+        host = new TestHost();
+    }
+
+    @Test
+    public void vertical() {
+        ExpandableLayout layout = host.addLayout(VERTICAL);
+        animate(layout, true);
+        animate(layout, false);
+        animate(layout, true);
+    }
+
+    @Test
+    public void horizontal() {
+        ExpandableLayout layout = host.addLayout(HORIZONTAL);
+        animate(layout, true);
+        animate(layout, false);
+        animate(layout, true);
+    }
+
+    @Test
+    public void rtl() {
+        host.activity.getApplicationInfo().flags |= ApplicationInfo.FLAG_SUPPORTS_RTL;
+        host.root.setLayoutDirection(View.LAYOUT_DIRECTION_RTL);
+        ExpandableLayout layout = host.createLayout(HORIZONTAL);
+        layout.setParallax(1);
+        TestHost.add(host.root, layout);
+        host.layout();
+        assertEquals(View.LAYOUT_DIRECTION_RTL, layout.getLayoutDirection());
+
+        animate(layout, true);
+        animate(layout, false);
+    }
+
+    @Test
+    public void parallax() {
+        ExpandableLayout layout = host.createLayout(VERTICAL);
+        layout.setParallax(0.5f);
+        TestHost.add(host.root, layout);
+        host.layout();
+
+        animate(layout, true);
+        animate(layout, false);
+    }
+
+    @Test
+    public void nested() {
+        ExpandableLayout outer = host.createEmptyLayout(VERTICAL);
+        ExpandableLayout inner = host.createLayout(VERTICAL);
+        TestHost.add(outer, inner);
+        TestHost.add(host.root, outer);
+        outer.setExpanded(true, false);
+        host.layout();
+
+        // Only the inner layout animates, the outer one is measured along
+        inner.expand();
+        animateNested(outer, inner);
+        assertEquals(CONTENT_SIZE, outer.getHeight());
+
+        // Both animate, and are measured top-down once per frame
+        inner.collapse();
+        outer.collapse();
+        animateNested(outer, inner);
+        assertEquals(COLLAPSED, outer.getState());
+
+        inner.expand();
+        outer.expand();
+        animateNested(outer, inner);
+        assertEquals(EXPANDED, inner.getState());
+        assertEquals(CONTENT_SIZE, inner.getHeight());
+        assertEquals(CONTENT_SIZE, outer.getHeight());
+    }
+
+    /**
+     * Runs an animation to its end, checking the work done by every frame
+     */
+    private void animate(ExpandableLayout layout, boolean expand) {
+        Counts animation = new Counts(layout);
+        layout.setExpanded(expand);
+        assertEquals(expand ? EXPANDING : COLLAPSING, layout.getState());
+        assertEquals(1, layout.stateChangeDispatchCount - animation.stateChanges);
+
+        int frames = 0;
+        while (host.clock.hasPendingFrame()) {
+            Counts before = new Counts(layout);
+            int pixels = visiblePixels(layout);
+            int state = layout.getState();
+            host.step();
+            frames++;
+
+            String frame = "Frame " + frames;
+            boolean changed = visiblePixels(layout) != pixels;
+            boolean stateChanged = layout.getState() != state;
+            boolean shown = layout.getVisibility() == View.VISIBLE;
+            boolean measured = changed && shown;
+            Counts delta = new Counts(layout).minus(before);
+
+            assertEquals(frame, measured ? 1 : 0, delta.measures);
+            // The children are only measured once the animation is over
+            assertEquals(frame, measured && !isAnimating(layout) ? 1 : 0, delta.contentMeasures);
+            assertTrue(frame, delta.visibilityChanges <= 1);
+            assertTrue(frame, delta.layoutRequests <= (changed ? 1 : 0) + delta.visibilityChanges);
+            assertEquals(frame, changed || stateChanged ? 1 : 0, delta.expansionUpdates);
+            assertEquals(frame, stateChanged ? 1 : 0, delta.stateChanges);
+
+            if (shown) {
+                assertEquals(frame, visiblePixels(layout), TestHost.size(layout));
+                assertEquals(frame, expectedTranslation(layout), translation(layout.getChildAt(0)), 0.01f);
+            }
+        }
+        assertTrue("The animation took " + frames + " frames", frames > 1);
+
+        Counts total = new Counts(layout).minus(animation);
+        assertEquals(expand ? EXPANDED : COLLAPSED, layout.getState());
+        assertEquals(expand ? View.VISIBLE : View.GONE, layout.getVisibility());
+        assertTrue(total.visibilityChanges <= 1);
+        assertTrue(total.contentMeasures <= 1);
+        // Start and end
+        assertEquals(2, total.stateChanges);
+    }
+
+    private void animateNested(ExpandableLayout outer, ExpandableLayout inner) {
+        int frames = 0;
+        while (host.clock.hasPendingFrame()) {
+            Counts outerBefore = new Counts(outer);
+            Counts innerBefore = new Counts(inner);
+            host.step();
+            frames++;
+
+            String frame = "Frame " + frames;
+            Counts outerDelta = new Counts(outer).minus(outerBefore);
+            Counts innerDelta = new Counts(inner).minus(innerBefore);
+            int visibilityChanges = outerDelta.visibilityChanges + innerDelta.visibilityChanges;
+
+            assertTrue(frame, outerDelta.measures <= 1);
+            assertTrue(frame, innerDelta.measures <= 1);
+            assertTrue(frame, innerDelta.contentMeasures <= 1);
+            assertTrue(frame, innerDelta.expansionUpdates <= 1);
+            assertTrue(frame, outerDelta.expansionUpdates <= 1);
+            // Layout requests of the inner layout reach the outer one, which requests at most once
+            assertTrue(frame, outerDelta.layoutRequests <= 1 + visibilityChanges);
+            assertTrue(frame, innerDelta.layoutRequests <= 1 + innerDelta.visibilityChanges);
+        }
+        assertTrue("The animation took " + frames + " frames", frames > 1);
+    }
+
+    private static boolean isAnimating(ExpandableLayout layout) {
+        return layout.getState() == EXPANDING || layout.getState() == COLLAPSING;
+    }
+
+    private static int visiblePixels(ExpandableLayout layout) {
+        return Math.round(CONTENT_SIZE * layout.getExpansion());
+    }
+
+    private static float expectedTranslation(ExpandableLayout layout) {
+        boolean rtl = layout.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
+        int direction = layout.getOrientation() == HORIZONTAL && rtl ? 1 : -1;
+        return direction * layout.getParallax() * (CONTENT_SIZE - visiblePixels(layout));
+    }
+
+    private static float translation(View child) {
+        ExpandableLayout parent = (ExpandableLayout) child.getParent();
+        return parent.getOrientation() == HORIZONTAL ? child.getTranslationX() : child.getTranslationY();
+    }
+
+    /**
+     * The work counters of a layout at some point
+     */
+    private static final class Counts {
+        final int measures;
+        final int contentMeasures;
+        final int layoutRequests;
+        final int visibilityChanges;
+        final int expansionUpdates;
+        final int stateChanges;
+
+        Counts(ExpandableLayout layout) {
+            this(layout.measureCount, layout.contentMeasureCount, layout.layoutRequestCount,
+                    layout.visibilityChangeCount, layout.expansionUpdateDispatchCount,
+                    layout.stateChangeDispatchCount);
+        }
+
+        private Counts(int measures, int contentMeasures, int layoutRequests, int visibilityChanges,
+                       int expansionUpdates, int stateChanges) {
+            this.measures = measures;
+            this.contentMeasures = contentMeasures;
+            this.layoutRequests = layoutRequests;
+            this.visibilityChanges = visibilityChanges;
+            this.expansionUpdates = expansionUpdates;
+            this.stateChanges = stateChanges;
+        }
+
+        Counts minus(Counts other) {
+            return new Counts(measures - other.measures, contentMeasures - other.contentMeasures,
+                    layoutRequests - other.layoutRequests, visibilityChanges - other.visibilityChanges,
+                    expansionUpdates - other.expansionUpdates, stateChanges - other.stateChanges);
+        }
+    }
+}
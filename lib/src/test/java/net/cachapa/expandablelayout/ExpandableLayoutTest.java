@@ -0,0 +1,121 @@
+package net.cachapa.expandablelayout;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static net.cachapa.expandablelayout.ExpandableLayout.State.COLLAPSED;
+import static net.cachapa.expandablelayout.ExpandableLayout.VERTICAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExpandableLayoutTest {
+    private TestHost host;
+
+    @Before
+    public void setUp() {
+        host = new TestHost();
+    }
+
+    @Test
+    @Config(sdk = {21, 27})
+    public void animationsDontAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ExpandableLayout layout = host.addLayout(VERTICAL);
+        // Loads the classes and fills the caches used by animations
+        for (int i = 0; i < 3; i++) {
+            animationCycle(layout, threads);
+        }
+
+        long allocated = 0;
+        for (int i = 0; i < 10; i++) {
+            allocated += animationCycle(layout, threads);
+        }
+        assertEquals("Bytes allocated by 10 animation cycles", 0, allocated);
+        assertEquals(COLLAPSED, layout.getState());
+        assertFalse(host.clock.hasPendingFrame());
+    }
+
+    /**
+     * Expands and collapses the layout twice, reversing the first expansion after two frames and
+     * running the other animations to their end
+     *
+     * @return The bytes allocated by the layout while starting and stepping the animations, not
+     * counting the layout passes
+     */
+    private long animationCycle(ExpandableLayout layout, ThreadMXBean threads) {
+        // Reading the counter may allocate by itself
+        long overhead = allocatedBytes(threads);
+        overhead = allocatedBytes(threads) - overhead;
+        long allocated = 0;
+        for (int i = 0; i < 4; i++) {
+            long start = allocatedBytes(threads);
+            layout.toggle();
+            allocated += allocatedBytes(threads) - start - overhead;
+
+            int frames = 0;
+            while (host.clock.hasPendingFrame() && (i > 0 || frames < 2)) {
+                start = allocatedBytes(threads);
+                host.clock.step();
+                allocated += allocatedBytes(threads) - start - overhead;
+                host.layout();
+                frames++;
+            }
+        }
+        return allocated;
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void ignoresExpansionChangesSmallerThanAPixel() {
+        ExpandableLayout layout = host.addLayout(VERTICAL);
+        layout.setExpansion(0.5f);
+        host.layout();
+        assertEquals(50, layout.getHeight());
+
+        final int[] dispatches = new int[1];
+        layout.setOnExpansionUpdateListener(new ExpandableLayout.OnExpansionUpdateListener() {
+            @Override
+            public void onExpansionUpdate(float expansionFraction, int state) {
+                dispatches[0]++;
+            }
+        });
+        int measures = layout.measureCount;
+        int layoutRequests = layout.layoutRequestCount;
+        int skippedUpdates = layout.skippedUpdateCount;
+
+        // Still rounds to 50 pixels, in the same state
+        layout.setExpansion(0.501f);
+        layout.setExpansion(0.502f);
+
+        assertEquals(skippedUpdates + 2, layout.skippedUpdateCount);
+        assertEquals(layoutRequests, layout.layoutRequestCount);
+        assertFalse(layout.isLayoutRequested());
+        assertEquals(0, dispatches[0]);
+        host.layout();
+        assertEquals(measures, layout.measureCount);
+        assertEquals(50, layout.getHeight());
+
+        // A whole pixel does need a layout pass
+        layout.setExpansion(0.51f);
+        assertTrue(layout.isLayoutRequested());
+        assertEquals(1, dispatches[0]);
+        host.layout();
+        assertEquals(51, layout.getHeight());
+    }
+}
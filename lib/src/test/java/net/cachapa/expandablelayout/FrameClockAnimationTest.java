@@ -0,0 +1,153 @@
+package net.cachapa.expandablelayout;
+
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static net.cachapa.expandablelayout.ExpandableLayout.State.COLLAPSED;
+import static net.cachapa.expandablelayout.ExpandableLayout.State.EXPANDED;
+import static net.cachapa.expandablelayout.ExpandableLayout.VERTICAL;
+import static net.cachapa.expandablelayout.TestHost.CONTENT_SIZE;
+import static net.cachapa.expandablelayout.TestHost.DURATION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that layouts and groups are timed by their {@link FrameClock}, at any refresh rate
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FrameClockAnimationTest {
+    private static final float[] REFRESH_RATES = {60, 90, 120};
+
+    @Test
+    public void layoutAnimationsLastTheirDurationAtAnyRefreshRate() {
+        for (float refreshRate : REFRESH_RATES) {
+            TestHost host = new TestHost(refreshRate);
+            ExpandableLayout layout = host.addLayout(VERTICAL);
+            assertEquals(refreshRate, layout.getRefreshRate(), 0);
+
+            layout.expand();
+            assertEquals(frameCount(host.clock, DURATION), host.stepUntilIdle());
+            assertEquals(EXPANDED, layout.getState());
+            assertEquals(CONTENT_SIZE, layout.getHeight());
+
+            layout.collapse();
+            assertEquals(frameCount(host.clock, DURATION), host.stepUntilIdle());
+            assertEquals(COLLAPSED, layout.getState());
+        }
+    }
+
+    @Test
+    public void policiesSeeFrameClockTime() throws InterruptedException {
+        TestHost host = new TestHost(120);
+        ExpandableLayout layout = host.addLayout(VERTICAL);
+        DefaultAnimationPolicy policy = new DefaultAnimationPolicy();
+        layout.setAnimationPolicy(policy);
+
+        // Stepped much slower than 120 Hz, which the policy mustn't take for dropped frames
+        for (int i = 0; i < 4; i++) {
+            layout.toggle();
+            while (host.clock.hasPendingFrame()) {
+                Thread.sleep(20);
+                host.step();
+            }
+            assertEquals(1, policy.getFramePressure(), 0.001f);
+        }
+        assertEquals(COLLAPSED, layout.getState());
+    }
+
+    @Test
+    public void cancellingALayoutAnimationRemovesItsFrameCallback() {
+        TestHost host = new TestHost();
+        ExpandableLayout layout = host.addLayout(VERTICAL);
+        layout.expand();
+        host.step();
+        host.step();
+        assertTrue(host.clock.hasPendingFrame());
+
+        layout.setExpanded(false, false);
+        assertFalse(host.clock.hasPendingFrame());
+        assertEquals(COLLAPSED, layout.getState());
+    }
+
+    @Test
+    public void groupSwitchesLastTheirDurationAtAnyRefreshRate() {
+        for (float refreshRate : REFRESH_RATES) {
+            TestHost host = new TestHost(refreshRate);
+            ExpandableLayout first = host.addLayout(VERTICAL);
+            ExpandableLayout second = host.addLayout(VERTICAL);
+            ExpandableGroup group = new ExpandableGroup();
+            group.setDuration(DURATION);
+            group.setFrameClock(host.clock);
+            group.add(first);
+            group.add(second);
+            group.expand(first, false);
+            host.layout();
+
+            group.expand(second);
+            assertEquals(frameCount(host.clock, DURATION), host.stepUntilIdle());
+            assertEquals(COLLAPSED, first.getState());
+            assertEquals(EXPANDED, second.getState());
+            assertEquals(View.GONE, first.getVisibility());
+            assertEquals(CONTENT_SIZE, second.getHeight());
+        }
+    }
+
+    @Test
+    public void groupSwitchesKeepProportionalDurations() {
+        TestHost host = new TestHost();
+        ExpandableLayout first = host.addLayout(VERTICAL);
+        ExpandableLayout second = host.addLayout(VERTICAL);
+        float density = host.activity.getResources().getDisplayMetrics().density;
+        // The expanding layout takes twice as long as the group duration
+        second.setProportionalDuration(2 * DURATION * density / CONTENT_SIZE, 0, 10 * DURATION);
+        ExpandableGroup group = new ExpandableGroup();
+        group.setDuration(DURATION);
+        group.setFrameClock(host.clock);
+        group.add(first);
+        group.add(second);
+        group.expand(first, false);
+        host.layout();
+
+        group.expand(second);
+        assertEquals(frameCount(host.clock, 2 * DURATION), host.stepUntilIdle());
+        assertEquals(COLLAPSED, first.getState());
+        assertEquals(EXPANDED, second.getState());
+    }
+
+    @Test
+    public void cancellingAGroupSwitchRemovesItsFrameCallback() {
+        TestHost host = new TestHost();
+        ExpandableLayout first = host.addLayout(VERTICAL);
+        ExpandableLayout second = host.addLayout(VERTICAL);
+        ExpandableGroup group = new ExpandableGroup();
+        group.setDuration(DURATION);
+        group.setFrameClock(host.clock);
+        group.add(first);
+        group.add(second);
+        group.expand(first, false);
+
+        group.expand(second);
+        host.step();
+        host.step();
+        assertTrue(host.clock.hasPendingFrame());
+
+        group.collapseAll(false);
+        assertFalse(host.clock.hasPendingFrame());
+        assertEquals(COLLAPSED, first.getState());
+        assertEquals(COLLAPSED, second.getState());
+    }
+
+    /**
+     * @return The number of frames of an animation: the first one at its start, and the last one
+     * once its duration has elapsed
+     */
+    private static int frameCount(ManualFrameClock clock, int duration) {
+        long durationNanos = duration * 1000000L;
+        long interval = clock.getFrameIntervalNanos();
+        return (int) ((durationNanos + interval - 1) / interval) + 1;
+    }
+}
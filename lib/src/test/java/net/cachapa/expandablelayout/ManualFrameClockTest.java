@@ -0,0 +1,84 @@
+package net.cachapa.expandablelayout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ManualFrameClockTest {
+
+    @Test
+    public void advancesByOneFrameIntervalPerStep() {
+        float[] refreshRates = {60, 90, 120};
+        for (float refreshRate : refreshRates) {
+            ManualFrameClock clock = new ManualFrameClock(refreshRate, 1000);
+            RecordingCallback callback = new RecordingCallback(clock, 3);
+            clock.postFrameCallback(callback);
+
+            assertEquals(3, clock.stepUntilIdle(100));
+            long interval = Math.round(1e9 / refreshRate);
+            assertEquals(interval, clock.getFrameIntervalNanos());
+            assertEquals(3, callback.frameTimes.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1000 + (i + 1) * interval, (long) callback.frameTimes.get(i));
+            }
+            assertEquals(refreshRate, clock.getRefreshRate(), 0);
+        }
+    }
+
+    @Test
+    public void runsCallbacksPostedDuringAFrameOnTheNextOne() {
+        ManualFrameClock clock = new ManualFrameClock(60);
+        RecordingCallback callback = new RecordingCallback(clock, 2);
+        clock.postFrameCallback(callback);
+
+        clock.step();
+        assertEquals(1, callback.frameTimes.size());
+        assertTrue(clock.hasPendingFrame());
+        clock.step();
+        assertEquals(2, callback.frameTimes.size());
+        assertFalse(clock.hasPendingFrame());
+    }
+
+    @Test
+    public void removedCallbacksDontRun() {
+        ManualFrameClock clock = new ManualFrameClock(60);
+        RecordingCallback callback = new RecordingCallback(clock, 1);
+        clock.postFrameCallback(callback);
+        clock.removeFrameCallback(callback);
+
+        assertFalse(clock.hasPendingFrame());
+        clock.step();
+        assertEquals(0, callback.frameTimes.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANonPositiveRefreshRate() {
+        new ManualFrameClock(0);
+    }
+
+    /**
+     * Records the time of its frames, reposting itself for a given number of frames
+     */
+    private static class RecordingCallback implements FrameClock.Callback {
+        final ArrayList<Long> frameTimes = new ArrayList<Long>();
+        private final FrameClock clock;
+        private final int frames;
+
+        RecordingCallback(FrameClock clock, int frames) {
+            this.clock = clock;
+            this.frames = frames;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameTimes.add(frameTimeNanos);
+            if (frameTimes.size() < frames) {
+                clock.postFrameCallback(this);
+            }
+        }
+    }
+}
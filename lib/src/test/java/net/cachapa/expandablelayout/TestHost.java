@@ -0,0 +1,131 @@
+package net.cachapa.expandablelayout;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
+import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Hosts layouts in an activity and steps their animations with a {@link ManualFrameClock}. The
+ * main looper is paused, so the views are only measured and laid out by {@link #layout()}, which
+ * runs once after every frame like a traversal of the view hierarchy would.
+ */
+class TestHost {
+    static final int WIDTH = 400;
+    static final int HEIGHT = 800;
+    static final int CONTENT_SIZE = 100;
+    static final int DURATION = 100;
+
+    private static final int MAX_FRAMES = 1000;
+
+    final Activity activity;
+    final FrameLayout root;
+    final ManualFrameClock clock;
+
+    TestHost() {
+        this(60);
+    }
+
+    TestHost(float refreshRate) {
+        activity = Robolectric.setupActivity(Activity.class);
+        root = new FrameLayout(activity);
+        activity.setContentView(root);
+        // The first traversal attaches the root to the window
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        ShadowLooper.pauseMainLooper();
+        assertNotNull("The root is not attached", root.getWindowToken());
+
+        clock = new ManualFrameClock(refreshRate);
+        layout();
+    }
+
+    /**
+     * @return A collapsed layout driven by the clock of the host, with content that is
+     * {@link #CONTENT_SIZE} pixels long along the orientation. It isn't added to the host yet.
+     */
+    ExpandableLayout createLayout(int orientation) {
+        ExpandableLayout layout = createEmptyLayout(orientation);
+        View content = new View(activity);
+        if (orientation == ExpandableLayout.VERTICAL) {
+            layout.addView(content, new FrameLayout.LayoutParams(MATCH_PARENT, CONTENT_SIZE));
+        } else {
+            layout.addView(content, new FrameLayout.LayoutParams(CONTENT_SIZE, MATCH_PARENT));
+        }
+        return layout;
+    }
+
+    ExpandableLayout createEmptyLayout(int orientation) {
+        ExpandableLayout layout = new ExpandableLayout(activity);
+        layout.setOrientation(orientation);
+        layout.setDuration(DURATION);
+        layout.setFrameClock(clock);
+        return layout;
+    }
+
+    /**
+     * Creates a layout, adds it to the host and lays it out
+     */
+    ExpandableLayout addLayout(int orientation) {
+        ExpandableLayout layout = createLayout(orientation);
+        add(root, layout);
+        layout();
+        return layout;
+    }
+
+    /**
+     * Adds a layout that wraps its content along its orientation and fills the parent otherwise
+     */
+    static void add(ViewGroup parent, ExpandableLayout layout) {
+        if (layout.getOrientation() == ExpandableLayout.VERTICAL) {
+            parent.addView(layout, new FrameLayout.LayoutParams(MATCH_PARENT, WRAP_CONTENT));
+        } else {
+            parent.addView(layout, new FrameLayout.LayoutParams(WRAP_CONTENT, MATCH_PARENT));
+        }
+    }
+
+    /**
+     * @return The size of the layout along its orientation, as of the last layout pass
+     */
+    static int size(ExpandableLayout layout) {
+        return layout.getOrientation() == ExpandableLayout.VERTICAL ? layout.getHeight() : layout.getWidth();
+    }
+
+    void layout() {
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Delivers one frame, then lays out the views
+     */
+    void step() {
+        clock.step();
+        layout();
+    }
+
+    /**
+     * Steps until every animation has finished
+     *
+     * @return The number of frames stepped
+     */
+    int stepUntilIdle() {
+        int frames = 0;
+        while (clock.hasPendingFrame()) {
+            if (frames == MAX_FRAMES) {
+                fail("The animations didn't finish after " + MAX_FRAMES + " frames");
+            }
+            step();
+            frames++;
+        }
+        return frames;
+    }
+}